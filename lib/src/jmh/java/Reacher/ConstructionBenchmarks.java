@@ -0,0 +1,59 @@
+package Reacher;
+
+import Reacher.utils.GraphShape;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a graph and its closure from a builder, and loading one from a snapshot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConstructionBenchmarks {
+
+	@State(Scope.Benchmark)
+	public static class ConstructionState
+	{
+		GraphBuilder builder;
+		Path snapshot;
+
+		@Param({"RANDOM", "LAYERED", "TREE", "DIAMOND", "CHAINS"})
+		GraphShape shape;
+
+		@Param({"1000", "10000", "100000"})
+		int numVertices;
+
+		@Param({"1", "8"})
+		int parallelism;
+
+		@Setup(Level.Trial)
+		public void initialize() throws IOException {
+			builder = shape.generate(numVertices).parallelism(parallelism);
+
+			snapshot = Files.createTempFile("graph", ".snapshot");
+			GraphSnapshot.write(builder.build(), snapshot);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			Files.deleteIfExists(snapshot);
+		}
+	}
+
+	@Benchmark
+	public Graph benchmarkBuild(ConstructionState state) {
+		return state.builder.build();
+	}
+
+	@Benchmark
+	public Graph benchmarkReadSnapshot(ConstructionState state) throws IOException {
+		return GraphSnapshot.read(state.snapshot);
+	}
+}
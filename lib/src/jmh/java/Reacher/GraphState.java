@@ -0,0 +1,64 @@
+package Reacher;
+
+import Reacher.utils.GraphShape;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A graph of every shape and size, shared by the threads of a benchmark, together with the edges it has and edges it
+ * could have, in a fixed random order. Sizes above the defaults are selected with {@code -PjmhSizes=1000000,10000000}.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+
+	@Param({"RANDOM", "LAYERED", "TREE", "DIAMOND", "CHAINS"})
+	GraphShape shape;
+
+	@Param({"1000", "10000", "100000"})
+	int numVertices;
+
+	Graph graph;
+
+	// parallel arrays of edges that exist and of edges that do not but can be added without a cycle
+	int[] edgeSources;
+	int[] edgeTargets;
+	int[] nonEdgeSources;
+	int[] nonEdgeTargets;
+
+	@Setup(Level.Trial)
+	public void initialize() {
+		graph = shape.generate(numVertices).build();
+
+		var random = new Random(GraphShape.SEED);
+		var edgeMap = graph.getEdges();
+		var edges = new ArrayList<>(edgeMap.entries());
+		Collections.shuffle(edges, random);
+
+		edgeSources = edges.stream().mapToInt(Map.Entry::getKey).toArray();
+		edgeTargets = edges.stream().mapToInt(Map.Entry::getValue).toArray();
+
+		// ids are a topological order, so an edge from a smaller id to a larger one never closes a cycle
+		int numNonEdges = Math.min(4096, numVertices);
+		nonEdgeSources = new int[numNonEdges];
+		nonEdgeTargets = new int[numNonEdges];
+		var chosen = new HashSet<Long>();
+
+		for (int i = 0; i < numNonEdges; ) {
+			int a = random.nextInt(numVertices);
+			int b = random.nextInt(numVertices);
+			int from = Math.min(a, b);
+			int to = Math.max(a, b);
+
+			if (from != to && !edgeMap.containsEntry(from, to) && chosen.add((long) from << 32 | to)) {
+				nonEdgeSources[i] = from;
+				nonEdgeTargets[i] = to;
+				i++;
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package Reacher;
+
+import Reacher.utils.GraphShape;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readers and writers sharing one graph. Each group reports the throughput of its readers and of its writers
+ * separately. Writers remove an edge and add it back, each writer from its own slice of the edges so that no two
+ * writers touch the same edge.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmarks {
+
+	@State(Scope.Thread)
+	public static class Reader
+	{
+		Random random;
+		int numVertices;
+
+		@Setup(Level.Trial)
+		public void initialize(GraphState state, ThreadParams threadParams) {
+			random = new Random(GraphShape.SEED + threadParams.getThreadIndex());
+			numVertices = state.numVertices;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Writer
+	{
+		int from;
+		int to;
+		int next;
+
+		@Setup(Level.Trial)
+		public void initialize(GraphState state, ThreadParams threadParams) {
+			int writers = threadParams.getSubgroupThreadCount();
+			int slice = state.edgeSources.length / writers;
+
+			from = threadParams.getSubgroupThreadIndex() * slice;
+			to = from + slice;
+			next = from;
+		}
+
+		int next() {
+			int i = next;
+			next = next + 1 == to ? from : next + 1;
+			return i;
+		}
+	}
+
+	@Benchmark
+	@Group("readMostly")
+	@GroupThreads(7)
+	public boolean readMostlyRead(GraphState state, Reader reader) {
+		return read(state, reader);
+	}
+
+	@Benchmark
+	@Group("readMostly")
+	@GroupThreads(1)
+	public void readMostlyWrite(GraphState state, Writer writer) {
+		write(state, writer);
+	}
+
+	@Benchmark
+	@Group("balanced")
+	@GroupThreads(4)
+	public boolean balancedRead(GraphState state, Reader reader) {
+		return read(state, reader);
+	}
+
+	@Benchmark
+	@Group("balanced")
+	@GroupThreads(4)
+	public void balancedWrite(GraphState state, Writer writer) {
+		write(state, writer);
+	}
+
+	private static boolean read(GraphState state, Reader reader) {
+		return state.graph.doesPathExist(reader.random.nextInt(reader.numVertices), reader.random.nextInt(reader.numVertices));
+	}
+
+	private static void write(GraphState state, Writer writer) {
+		int i = writer.next();
+		state.graph.removeEdge(state.edgeSources[i], state.edgeTargets[i]);
+		state.graph.addEdge(state.edgeSources[i], state.edgeTargets[i]);
+	}
+}
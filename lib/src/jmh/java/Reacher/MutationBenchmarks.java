@@ -0,0 +1,115 @@
+package Reacher;
+
+import Reacher.domain.Mutation;
+import Reacher.domain.Node;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every mutation of {@link Reacher.service.GraphMutationService}. Each invocation undoes its change, so the graph
+ * stays the same across invocations and iterations, except in {@link #benchmarkRemoveEdge}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmarks {
+
+	private static final int BATCH_SIZE = 64;
+
+	// below the 999 edges of the smallest trees and chains, so that no iteration runs out of edges to remove
+	private static final int REMOVALS_PER_ITERATION = 500;
+
+	@State(Scope.Thread)
+	public static class Position
+	{
+		int next;
+
+		int next(int length) {
+			int i = next;
+			next = (next + 1) % length;
+			return i;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Batches
+	{
+		List<Mutation> addEdges;
+		List<Mutation> removeEdges;
+
+		@Setup(Level.Trial)
+		public void initialize(GraphState state) {
+			addEdges = new ArrayList<>();
+			removeEdges = new ArrayList<>();
+
+			for (int i = 0; i < Math.min(BATCH_SIZE, state.nonEdgeSources.length); i++) {
+				addEdges.add(Mutation.addEdge(state.nonEdgeSources[i], state.nonEdgeTargets[i]));
+				removeEdges.add(Mutation.removeEdge(state.nonEdgeSources[i], state.nonEdgeTargets[i]));
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class EdgeRemovalState
+	{
+		Graph g;
+		int[] sources;
+		int[] targets;
+		int next;
+
+		// the graph is rebuilt for every iteration so that each invocation removes an edge that still exists
+		@Setup(Level.Iteration)
+		public void initialize(GraphState state) {
+			if (state.edgeSources.length < REMOVALS_PER_ITERATION) {
+				throw new IllegalStateException(state.shape + " with " + state.numVertices + " vertices has fewer than "
+						+ REMOVALS_PER_ITERATION + " edges to remove");
+			}
+
+			g = state.shape.generate(state.numVertices).build();
+			sources = state.edgeSources;
+			targets = state.edgeTargets;
+			next = 0;
+		}
+	}
+
+	@Benchmark
+	public void benchmarkAddAndRemoveEdge(GraphState state, Position position) {
+		int i = position.next(state.nonEdgeSources.length);
+		state.graph.addEdge(state.nonEdgeSources[i], state.nonEdgeTargets[i]);
+		state.graph.removeEdge(state.nonEdgeSources[i], state.nonEdgeTargets[i]);
+	}
+
+	@Benchmark
+	public void benchmarkRemoveAndAddEdge(GraphState state, Position position) {
+		int i = position.next(state.edgeSources.length);
+		state.graph.removeEdge(state.edgeSources[i], state.edgeTargets[i]);
+		state.graph.addEdge(state.edgeSources[i], state.edgeTargets[i]);
+	}
+
+	@Benchmark
+	public void benchmarkAddAndRemoveNode(GraphState state) {
+		state.graph.addNode(new Node(state.numVertices));
+		state.graph.removeNode(state.numVertices);
+	}
+
+	@Benchmark
+	public void benchmarkApplyBatch(GraphState state, Batches batches) {
+		state.graph.applyBatch(batches.addEdges);
+		state.graph.applyBatch(batches.removeEdges);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2, batchSize = REMOVALS_PER_ITERATION)
+	@Measurement(iterations = 5, batchSize = REMOVALS_PER_ITERATION)
+	public void benchmarkRemoveEdge(GraphState state, EdgeRemovalState removal) {
+		int i = removal.next++;
+		removal.g.removeEdge(removal.sources[i], removal.targets[i]);
+	}
+}
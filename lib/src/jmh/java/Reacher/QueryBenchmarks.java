@@ -0,0 +1,158 @@
+package Reacher;
+
+import Reacher.service.NodeIdCursor;
+import Reacher.utils.GraphShape;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every read query of {@link Reacher.service.IGraph} on random nodes. Sample time reports latency percentiles.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmarks {
+
+	private static final int BATCH_SIZE = 64;
+
+	@State(Scope.Thread)
+	public static class Queries
+	{
+		Random random;
+		int numVertices;
+		int[] batch;
+		int[] otherBatch;
+		int[] buffer;
+
+		@Setup(Level.Trial)
+		public void initialize(GraphState state) {
+			random = new Random(GraphShape.SEED);
+			numVertices = state.numVertices;
+			batch = new int[BATCH_SIZE];
+			otherBatch = new int[BATCH_SIZE];
+			buffer = new int[NodeIdCursor.DEFAULT_BATCH_SIZE];
+		}
+
+		int nextNode() {
+			return random.nextInt(numVertices);
+		}
+
+		int[] nextBatch(int[] batch) {
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = nextNode();
+			}
+			return batch;
+		}
+	}
+
+	@Benchmark
+	public Object benchmarkGetNode(GraphState state, Queries queries) {
+		return state.graph.getNode(queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkGetChildren(GraphState state, Queries queries) {
+		return state.graph.getChildren(queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkGetParents(GraphState state, Queries queries) {
+		return state.graph.getParents(queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkGetDescendants(GraphState state, Queries queries) {
+		return state.graph.getDescendants(queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkGetAncestors(GraphState state, Queries queries) {
+		return state.graph.getAncestors(queries.nextNode());
+	}
+
+	@Benchmark
+	public boolean benchmarkDoesPathExist(GraphState state, Queries queries) {
+		return state.graph.doesPathExist(queries.nextNode(), queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkDoesPathExistBatch(GraphState state, Queries queries) {
+		return state.graph.doesPathExist(queries.nextBatch(queries.batch), queries.nextBatch(queries.otherBatch));
+	}
+
+	@Benchmark
+	public Object benchmarkGetDescendantsOfAll(GraphState state, Queries queries) {
+		return state.graph.getDescendantsOfAll(queries.nextBatch(queries.batch));
+	}
+
+	@Benchmark
+	public Object benchmarkGetAncestorsOfAll(GraphState state, Queries queries) {
+		return state.graph.getAncestorsOfAll(queries.nextBatch(queries.batch));
+	}
+
+	@Benchmark
+	public Object benchmarkLowestCommonAncestors(GraphState state, Queries queries) {
+		return state.graph.lowestCommonAncestors(queries.nextNode(), queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkLowestCommonAncestorsBatch(GraphState state, Queries queries) {
+		return state.graph.lowestCommonAncestors(queries.nextBatch(queries.batch), queries.nextBatch(queries.otherBatch));
+	}
+
+	@Benchmark
+	public Object benchmarkCommonDescendants(GraphState state, Queries queries) {
+		return state.graph.commonDescendants(queries.nextNode(), queries.nextNode());
+	}
+
+	@Benchmark
+	public Object benchmarkCommonDescendantsBatch(GraphState state, Queries queries) {
+		return state.graph.commonDescendants(queries.nextBatch(queries.batch), queries.nextBatch(queries.otherBatch));
+	}
+
+	@Benchmark
+	public void benchmarkForEachDescendant(GraphState state, Queries queries, Blackhole blackhole) {
+		state.graph.forEachDescendant(queries.nextNode(), blackhole::consume);
+	}
+
+	@Benchmark
+	public void benchmarkForEachAncestor(GraphState state, Queries queries, Blackhole blackhole) {
+		state.graph.forEachAncestor(queries.nextNode(), blackhole::consume);
+	}
+
+	@Benchmark
+	public void benchmarkDescendantCursor(GraphState state, Queries queries, Blackhole blackhole) {
+		var cursor = state.graph.descendantCursor(queries.nextNode());
+		while (cursor.next(queries.buffer) > 0) {
+			blackhole.consume(queries.buffer);
+		}
+	}
+
+	@Benchmark
+	public void benchmarkAncestorCursor(GraphState state, Queries queries, Blackhole blackhole) {
+		var cursor = state.graph.ancestorCursor(queries.nextNode());
+		while (cursor.next(queries.buffer) > 0) {
+			blackhole.consume(queries.buffer);
+		}
+	}
+
+	@Benchmark
+	public long benchmarkDescendantIds(GraphState state, Queries queries) {
+		return state.graph.descendantIds(queries.nextNode()).sum();
+	}
+
+	@Benchmark
+	public long benchmarkAncestorIds(GraphState state, Queries queries) {
+		return state.graph.ancestorIds(queries.nextNode()).sum();
+	}
+
+	@Benchmark
+	public Object benchmarkSnapshot(GraphState state) {
+		return state.graph.snapshot();
+	}
+}
@@ -0,0 +1,116 @@
+package Reacher;
+
+import Reacher.utils.GraphShape;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The closure against 2-hop labels: the time to build each, the latency of path probes and of listing and counting
+ * descendants, and the size of the index, which is printed once per trial. The gc profiler also reports the memory
+ * allocated while building.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReachabilityBackendBenchmarks {
+
+	private static final int NUM_REACHABLE_PAIRS = 1024;
+
+	@State(Scope.Benchmark)
+	public static class BackendState
+	{
+		GraphBuilder builder;
+		Graph graph;
+		// parallel arrays of nodes and one of their descendants, so the probes get past the reachability filter
+		int[] reachableSources;
+		int[] reachableTargets;
+
+		@Param({"CLOSURE", "TWO_HOP_LABELS"})
+		ReachabilityBackend backend;
+
+		@Param({"RANDOM", "LAYERED", "TREE", "DIAMOND", "CHAINS"})
+		GraphShape shape;
+
+		@Param({"10000", "100000"})
+		int numVertices;
+
+		@Setup(Level.Trial)
+		public void initialize() {
+			builder = shape.generate(numVertices).reachabilityBackend(backend);
+			graph = builder.build();
+
+			var random = new Random(GraphShape.SEED);
+			reachableSources = new int[NUM_REACHABLE_PAIRS];
+			reachableTargets = new int[NUM_REACHABLE_PAIRS];
+
+			for (int i = 0, attempts = 0; i < NUM_REACHABLE_PAIRS && attempts < 100 * NUM_REACHABLE_PAIRS; attempts++) {
+				int source = random.nextInt(numVertices);
+				var descendants = graph.getDescendants(source);
+
+				if (!descendants.isEmpty()) {
+					reachableSources[i] = source;
+					reachableTargets[i] = descendants.get(random.nextInt(descendants.size())).getId();
+					i++;
+				}
+			}
+
+			System.out.printf("%n%s index of %s graph with %d nodes: %d bytes%n",
+					backend, shape, numVertices, graph.reachabilityIndexBytes());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Probes
+	{
+		Random random;
+		int numVertices;
+		int next;
+
+		@Setup(Level.Trial)
+		public void initialize(BackendState state) {
+			random = new Random(GraphShape.SEED);
+			numVertices = state.numVertices;
+		}
+
+		int nextNode() {
+			return random.nextInt(numVertices);
+		}
+
+		int nextPair() {
+			next = (next + 1) % NUM_REACHABLE_PAIRS;
+			return next;
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Graph benchmarkBuild(BackendState state) {
+		return state.builder.build();
+	}
+
+	@Benchmark
+	public boolean benchmarkDoesPathExist(BackendState state, Probes probes) {
+		return state.graph.doesPathExist(probes.nextNode(), probes.nextNode());
+	}
+
+	@Benchmark
+	public boolean benchmarkDoesPathExistReachable(BackendState state, Probes probes) {
+		int pair = probes.nextPair();
+		return state.graph.doesPathExist(state.reachableSources[pair], state.reachableTargets[pair]);
+	}
+
+	@Benchmark
+	public Object benchmarkGetDescendants(BackendState state, Probes probes) {
+		return state.graph.getDescendants(probes.nextNode());
+	}
+
+	@Benchmark
+	public int benchmarkCountDescendants(BackendState state, Probes probes) {
+		return state.graph.countDescendants(probes.nextNode());
+	}
+}
@@ -7,7 +7,6 @@ import Reacher.domain.Node;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
 
 public class BenchmarkUtils {
 
@@ -37,9 +36,8 @@ public class BenchmarkUtils {
 			graphBuilder.addNode(vertices[i]);
 		}
 
-		shuffleArray(vertices);
-
-		Random random = new Random(System.currentTimeMillis());
+		Random random = new Random(GraphShape.SEED);
+		shuffleArray(vertices, random);
 
 		while (set.size() < E) {
 
@@ -62,9 +60,7 @@ public class BenchmarkUtils {
 	}
 
 	// Implementing Fisher–Yates shuffle
-	private static void shuffleArray(INode[] array) {
-		// If running on Java 6 or older, use `new Random()` on RHS here
-		Random rnd = ThreadLocalRandom.current();
+	private static void shuffleArray(INode[] array, Random rnd) {
 		for (int i = array.length - 1; i > 0; i--)
 		{
 			int index = rnd.nextInt(i + 1);
@@ -0,0 +1,143 @@
+package Reacher.utils;
+
+import Reacher.GraphBuilder;
+import Reacher.domain.Node;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The graph shapes the benchmarks run on. Node ids are the vertex numbers and every edge goes from a smaller id to a
+ * larger one, so the ids are a topological order. A shape generated with the same size and seed is always the same
+ * graph.
+ */
+public enum GraphShape {
+
+	/**
+	 * Two edges per vertex between uniformly chosen pairs, so most vertices reach a large part of the graph.
+	 */
+	RANDOM {
+		@Override
+		void addEdges(int n, Random random, EdgeSet edges) {
+			if (n < 2) {
+				return;
+			}
+
+			for (int e = 0; e < 2 * n; e++) {
+				int a = random.nextInt(n);
+				int b = random.nextInt(n);
+
+				if (a != b) {
+					edges.add(Math.min(a, b), Math.max(a, b));
+				}
+			}
+		}
+	},
+
+	/**
+	 * Layers of about √n vertices, each vertex with two edges into the next layer.
+	 */
+	LAYERED {
+		@Override
+		void addEdges(int n, Random random, EdgeSet edges) {
+			int width = Math.max(1, (int) Math.sqrt(n));
+
+			for (int v = 0; v + width < n; v++) {
+				int nextLayer = (v / width + 1) * width;
+				int nextWidth = Math.min(width, n - nextLayer);
+
+				edges.add(v, nextLayer + random.nextInt(nextWidth));
+				edges.add(v, nextLayer + random.nextInt(nextWidth));
+			}
+		}
+	},
+
+	/**
+	 * A random recursive tree: every vertex but the root hangs off a uniformly chosen earlier vertex.
+	 */
+	TREE {
+		@Override
+		void addEdges(int n, Random random, EdgeSet edges) {
+			for (int v = 1; v < n; v++) {
+				edges.add(random.nextInt(v), v);
+			}
+		}
+	},
+
+	/**
+	 * A spine of diamonds, each splitting into two vertices that join again, so the number of paths doubles with
+	 * every diamond and most pairs are reached along many paths.
+	 */
+	DIAMOND {
+		@Override
+		void addEdges(int n, Random random, EdgeSet edges) {
+			for (int top = 0; top + 3 < n; top += 3) {
+				edges.add(top, top + 1);
+				edges.add(top, top + 2);
+				edges.add(top + 1, top + 3);
+				edges.add(top + 2, top + 3);
+			}
+		}
+	},
+
+	/**
+	 * Chains of 1000 vertices, with one edge per chain into a random later chain.
+	 */
+	CHAINS {
+		@Override
+		void addEdges(int n, Random random, EdgeSet edges) {
+			for (int v = 0; v + 1 < n; v++) {
+				if ((v + 1) % CHAIN_LENGTH != 0) {
+					edges.add(v, v + 1);
+				}
+			}
+
+			for (int start = 0; start + CHAIN_LENGTH < n; start += CHAIN_LENGTH) {
+				int from = start + random.nextInt(CHAIN_LENGTH);
+				int to = start + CHAIN_LENGTH + random.nextInt(n - start - CHAIN_LENGTH);
+				edges.add(from, to);
+			}
+		}
+	};
+
+	public static final long SEED = 42;
+
+	private static final int CHAIN_LENGTH = 1000;
+
+	abstract void addEdges(int n, Random random, EdgeSet edges);
+
+	public GraphBuilder generate(int n) {
+		return generate(n, SEED);
+	}
+
+	public GraphBuilder generate(int n, long seed) {
+		var builder = new GraphBuilder();
+		for (int v = 0; v < n; v++) {
+			builder.addNode(new Node(v));
+		}
+
+		addEdges(n, new Random(seed), new EdgeSet(builder));
+
+		return builder;
+	}
+
+	/**
+	 * Adds each edge to the builder once.
+	 */
+	static class EdgeSet {
+
+		private final GraphBuilder builder;
+		private final Set<Long> edges = new HashSet<>();
+
+		private EdgeSet(GraphBuilder builder) {
+			this.builder = builder;
+		}
+
+		void add(int from, int to) {
+			if (edges.add((long) from << 32 | to)) {
+				builder.addEdge(from, to);
+			}
+		}
+	}
+}
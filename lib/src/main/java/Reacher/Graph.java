@@ -1,366 +1,880 @@
 package Reacher;
 
 import Reacher.domain.INode;
-import Reacher.domain.exceptions.NodeNotFoundException;
+import Reacher.domain.Mutation;
+import Reacher.domain.exceptions.CycleDetectedException;
+import Reacher.index.AdjacencyArrays;
+import Reacher.index.CondensedReachabilityIndex;
+import Reacher.index.ReachabilityFilter;
+import Reacher.index.ReachabilityIndex;
+import Reacher.index.ReachabilityIndexFile;
+import Reacher.index.TwoHopReachabilityIndex;
+import Reacher.index.VertexCursor;
+import Reacher.metrics.MetricsSink;
 import Reacher.service.IGraph;
+import Reacher.service.NodeIdCursor;
+import Reacher.utils.ChunkedArray;
+import Reacher.utils.GraphUtils;
+import Reacher.utils.IntStack;
+import Reacher.utils.SegmentedIntIntMap;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
-import org.ejml.data.DMatrixSparseCSC;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reads never lock: each query reads the current {@link GraphVersion} once through a volatile field and answers from
+ * it. Writers serialise on a lock, build the next version from a fork of the current one and publish it atomically.
+ */
 public class Graph implements IGraph {
 
-	private final ReadWriteLock readWriteLock;
-	private final int n;
-	private final Map<Integer, INode> vertexNumToNode;
-	private final Map<Integer, INode> nodeIdToNode;
-	private final Map<Integer, Integer> nodeIdToVertexNum;
-	private final DMatrixSparseCSC adjacencyMatrix;
-	private final DMatrixSparseCSC reachabilityMatrix;
-	private final Set<Integer> unusedVertexNums;
+	private static final int NO_VERTEX = GraphVersion.NO_VERTEX;
+	// batches with more edge changes than this fraction of the vertex count rebuild the closure from scratch
+	private static final double INCREMENTAL_BATCH_RATIO = 0.1;
+
+	private final ReentrantLock writeLock;
+	private final boolean readOnly;
+	private volatile GraphVersion version;
+	private volatile MutationLog mutationLog;
+	private volatile MetricsSink metricsSink;
+	private volatile ResultCache resultCache;
+	private final FilterCounters filterCounters;
+	// the builder options the graph does not keep in its versions, which toBuilder() carries over
+	private int parallelism = 1;
+	private Path reachabilityIndexFile;
+	private long resultCacheSize;
 
 	public Graph(
 			int n,
-			Map<Integer, INode> vertexNumToNode,
-			Map<Integer, Integer> nodeIdToVertexNum,
-			Map<Integer, INode> nodeIdToNode,
-			DMatrixSparseCSC adjacencyMatrix,
-			DMatrixSparseCSC reachabilityMatrix) {
+			INode[] vertexNumToNode,
+			SegmentedIntIntMap nodeIdToVertexNum,
+			AdjacencyArrays children,
+			AdjacencyArrays parents,
+			ReachabilityIndex reachabilityIndex) {
 
-		this.n = n;
-		this.vertexNumToNode = new HashMap<>(vertexNumToNode);
-		this.nodeIdToVertexNum = new HashMap<>(nodeIdToVertexNum);
-		this.adjacencyMatrix = adjacencyMatrix;
-		this.reachabilityMatrix = reachabilityMatrix;
-		this.nodeIdToNode = new HashMap<>(nodeIdToNode);
-		this.unusedVertexNums = new HashSet<>();
-		this.readWriteLock = new ReentrantReadWriteLock();
+		this(n, vertexNumToNode, nodeIdToVertexNum, children, parents, reachabilityIndex, false);
 	}
 
-	@Override
-	public Optional<INode> getNode(int nodeId) {
-		return Optional.ofNullable(nodeIdToNode.get(nodeId));
+	/**
+	 * @param allowCycles whether edges may close cycles, in which case the reachability index must be a
+	 *     {@link CondensedReachabilityIndex} and the graph keeps no topological order
+	 */
+	public Graph(
+			int n,
+			INode[] vertexNumToNode,
+			SegmentedIntIntMap nodeIdToVertexNum,
+			AdjacencyArrays children,
+			AdjacencyArrays parents,
+			ReachabilityIndex reachabilityIndex,
+			boolean allowCycles) {
+
+		this(new GraphVersion(n, ChunkedArray.of(vertexNumToNode), new IntStack(), nodeIdToVertexNum, children, parents,
+				reachabilityIndex, allowCycles ? null : ReachabilityFilter.of(GraphUtils.topologicalSort(children, parents), children, parents)),
+				false, new FilterCounters());
+	}
+
+	private Graph(GraphVersion version, boolean readOnly, FilterCounters filterCounters) {
+		this.version = version;
+		this.readOnly = readOnly;
+		this.writeLock = new ReentrantLock();
+		this.filterCounters = filterCounters;
+	}
+
+	GraphVersion currentVersion() {
+		return version;
 	}
 
 	@Override
-	public List<INode> getChildren(int nodeId) {
-		readWriteLock.readLock().lock();
-		try {
-			assertNodeExists(nodeId);
+	public IGraph snapshot() {
+		if (readOnly) {
+			return this;
+		}
 
-			int rowId = nodeIdToVertexNum.get(nodeId);
+		var snapshot = new Graph(version, true, filterCounters);
+		snapshot.setBuildOptions(parallelism, reachabilityIndexFile);
+		snapshot.resultCacheSize = resultCacheSize;
 
-			var nodeListBuilder = ImmutableList.<INode>builder();
+		return snapshot;
+	}
 
-			for (int i = 0; i < n; i++) {
-				if (adjacencyMatrix.get(rowId, i) > 0) {
-					INode node = vertexNumToNode.get(i);
-					nodeListBuilder.add(node);
-				}
-			}
+	/**
+	 * Records the options of the {@link GraphBuilder} that built the graph, before the graph is shared.
+	 */
+	void setBuildOptions(int parallelism, Path reachabilityIndexFile) {
+		this.parallelism = parallelism;
+		this.reachabilityIndexFile = reachabilityIndexFile;
+	}
 
-			return nodeListBuilder.build();
-		} finally {
-			readWriteLock.readLock().unlock();
-		}
+	@Override
+	public Optional<INode> getNode(int nodeId) {
+		var v = version;
+		int vertexNum = v.nodeIdToVertexNum.get(nodeId, NO_VERTEX);
+
+		return vertexNum == NO_VERTEX ? Optional.empty() : Optional.of(v.getNode(vertexNum));
 	}
 
 	@Override
-	public List<INode> getParents(int nodeId) {
-		readWriteLock.readLock().lock();
-		try {
-			assertNodeExists(nodeId);
+	public List<INode> getChildren(int nodeId) {
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
-			int colId = nodeIdToVertexNum.get(nodeId);
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.children.forEachNeighbour(vertexNum, child -> nodeListBuilder.add(v.getNode(child)));
 
-			var nodeListBuilder = ImmutableList.<INode>builder();
+		return nodeListBuilder.build();
+	}
 
-			for (int i = 0; i < n; i++) {
-				if (adjacencyMatrix.get(i, colId) > 0) {
-					INode node = vertexNumToNode.get(i);
-					nodeListBuilder.add(node);
-				}
-			}
+	@Override
+	public List<INode> getParents(int nodeId) {
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
-			return nodeListBuilder.build();
-		} finally {
-			readWriteLock.readLock().unlock();
-		}
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.parents.forEachNeighbour(vertexNum, parent -> nodeListBuilder.add(v.getNode(parent)));
+
+		return nodeListBuilder.build();
 	}
 
 	@Override
 	public List<INode> getAncestors(int nodeId) {
-		readWriteLock.readLock().lock();
-		try {
-			assertNodeExists(nodeId);
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
-			int colId = nodeIdToVertexNum.get(nodeId);
-
-			var nodeListBuilder = ImmutableList.<INode>builder();
+		var cache = resultCache;
+		var cached = cache != null ? cache.get(ResultCache.ANCESTORS, vertexNum, v.id) : null;
+		if (cached != null) {
+			return cached;
+		}
 
-			for (int i = 0; i < n; i++) {
-				if (reachabilityMatrix.get(i, colId) > 0) {
-					INode node = vertexNumToNode.get(i);
-					nodeListBuilder.add(node);
-				}
-			}
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.reachabilityIndex.forEachAncestor(vertexNum, ancestor -> nodeListBuilder.add(v.getNode(ancestor)));
+		var ancestors = nodeListBuilder.build();
 
-			return nodeListBuilder.build();
-		} finally {
-			readWriteLock.readLock().unlock();
+		if (cache != null) {
+			cache.put(ResultCache.ANCESTORS, vertexNum, v.id, ancestors);
 		}
+
+		return ancestors;
 	}
 
 	@Override
 	public List<INode> getDescendants(int nodeId) {
-		readWriteLock.readLock().lock();
-		try {
-			assertNodeExists(nodeId);
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
-			int rowId = nodeIdToVertexNum.get(nodeId);
-
-			var nodeListBuilder = ImmutableList.<INode>builder();
+		var cache = resultCache;
+		var cached = cache != null ? cache.get(ResultCache.DESCENDANTS, vertexNum, v.id) : null;
+		if (cached != null) {
+			return cached;
+		}
 
-			for (int i = 0; i < n; i++) {
-				if (reachabilityMatrix.get(rowId, i) > 0) {
-					INode node = vertexNumToNode.get(i);
-					nodeListBuilder.add(node);
-				}
-			}
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.reachabilityIndex.forEachDescendant(vertexNum, descendant -> nodeListBuilder.add(v.getNode(descendant)));
+		var descendants = nodeListBuilder.build();
 
-			return nodeListBuilder.build();
-		} finally {
-			readWriteLock.readLock().unlock();
+		if (cache != null) {
+			cache.put(ResultCache.DESCENDANTS, vertexNum, v.id, descendants);
 		}
+
+		return descendants;
 	}
 
+	/**
+	 * Most probes on a sparse graph are negative, and the reachability filter answers most of those by comparing the
+	 * two vertices' positions in two topological orders, without reading the closure.
+	 */
 	@Override
 	public boolean doesPathExist(int fromNodeId, int toNodeId) {
-		readWriteLock.readLock().lock();
-		try {
-			assertNodeExists(fromNodeId);
-			assertNodeExists(toNodeId);
+		var v = version;
+		int rowId = v.getVertexNum(fromNodeId);
+		int colId = v.getVertexNum(toNodeId);
 
-			int rowId = nodeIdToVertexNum.get(fromNodeId);
-			int colId = nodeIdToVertexNum.get(toNodeId);
+		if (v.reachabilityFilter != null && !v.reachabilityFilter.mayReach(rowId, colId)) {
+			filterCounters.record(1, 1, 0);
+			return false;
+		}
 
-			var result = reachabilityMatrix.get(rowId, colId) >= 1;
+		boolean reaches = v.reachabilityIndex.reaches(rowId, colId);
+		filterCounters.record(1, 0, reaches ? 0 : 1);
+		return reaches;
+	}
 
-			return result;
-		} finally {
-			readWriteLock.readLock().unlock();
+	@Override
+	public BitSet doesPathExist(int[] fromNodeIds, int[] toNodeIds) {
+		if (fromNodeIds.length != toNodeIds.length) {
+			throw new IllegalArgumentException("fromNodeIds and toNodeIds must have the same length");
+		}
+
+		var v = version;
+		int numPairs = fromNodeIds.length;
+		int[] toVertexNums = new int[numPairs];
+
+		// sort the probes by source vertex so that consecutive probes hit the same reachability row
+		long[] probes = new long[numPairs];
+		for (int i = 0; i < numPairs; i++) {
+			probes[i] = ((long) v.getVertexNum(fromNodeIds[i]) << 32) | i;
+			toVertexNums[i] = v.getVertexNum(toNodeIds[i]);
+		}
+		Arrays.sort(probes);
+
+		var filter = v.reachabilityFilter;
+		int rejected = 0;
+		int indexNegatives = 0;
+
+		var result = new BitSet(numPairs);
+		for (long probe : probes) {
+			int fromVertexNum = (int) (probe >>> 32);
+			int i = (int) probe;
+
+			if (filter != null && !filter.mayReach(fromVertexNum, toVertexNums[i])) {
+				rejected++;
+			} else if (v.reachabilityIndex.reaches(fromVertexNum, toVertexNums[i])) {
+				result.set(i);
+			} else {
+				indexNegatives++;
+			}
 		}
+		filterCounters.record(numPairs, rejected, indexNegatives);
+
+		return result;
 	}
 
 	@Override
-	public List<INode> getNodes() {
-		readWriteLock.readLock().lock();
-		try {
-			var builder = ImmutableList.<INode>builder();
+	public List<INode> getDescendantsOfAll(int[] nodeIds) {
+		var v = version;
+		int[] vertexNums = getSortedVertexNums(v, nodeIds);
 
-			for (int i = 0; i < n; i++) {
-				if (!unusedVertexNums.contains(i)) {
-					builder.add(vertexNumToNode.get(i));
-				}
-			}
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.reachabilityIndex.forEachDescendantOfAny(vertexNums, descendant -> nodeListBuilder.add(v.getNode(descendant)));
 
-			return builder.build();
-		} finally {
-			readWriteLock.readLock().unlock();
+		return nodeListBuilder.build();
+	}
+
+	@Override
+	public List<INode> getAncestorsOfAll(int[] nodeIds) {
+		var v = version;
+		int[] vertexNums = getSortedVertexNums(v, nodeIds);
+
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.reachabilityIndex.forEachAncestorOfAny(vertexNums, ancestor -> nodeListBuilder.add(v.getNode(ancestor)));
+
+		return nodeListBuilder.build();
+	}
+
+	private static int[] getSortedVertexNums(GraphVersion v, int[] nodeIds) {
+		int[] vertexNums = new int[nodeIds.length];
+
+		for (int i = 0; i < nodeIds.length; i++) {
+			vertexNums[i] = v.getVertexNum(nodeIds[i]);
 		}
+		Arrays.sort(vertexNums);
+
+		return vertexNums;
 	}
 
 	@Override
-	public Multimap<Integer, Integer> getEdges() {
-		readWriteLock.readLock().lock();
+	public List<INode> lowestCommonAncestors(int nodeAId, int nodeBId) {
+		var v = version;
+		return lowestCommonAncestors(v, v.getVertexNum(nodeAId), v.getVertexNum(nodeBId));
+	}
 
-		try {
-			var builder = ImmutableMultimap.<Integer, Integer>builder();
+	@Override
+	public List<List<INode>> lowestCommonAncestors(int[] nodeAIds, int[] nodeBIds) {
+		if (nodeAIds.length != nodeBIds.length) {
+			throw new IllegalArgumentException("nodeAIds and nodeBIds must have the same length");
+		}
 
-			for (int i = 0; i < n; i++) {
+		var v = version;
+		var results = ImmutableList.<List<INode>>builderWithExpectedSize(nodeAIds.length);
+		for (int i = 0; i < nodeAIds.length; i++) {
+			results.add(lowestCommonAncestors(v, v.getVertexNum(nodeAIds[i]), v.getVertexNum(nodeBIds[i])));
+		}
 
-				if (unusedVertexNums.contains(i)) {
-					continue;
-				}
+		return results.build();
+	}
 
-				for (int j = 0; j < n; j++) {
+	private static List<INode> lowestCommonAncestors(GraphVersion v, int vertexA, int vertexB) {
+		if (vertexA == vertexB || v.reachabilityIndex.reaches(vertexA, vertexB)) {
+			return ImmutableList.of(v.getNode(vertexA));
+		}
+		if (v.reachabilityIndex.reaches(vertexB, vertexA)) {
+			return ImmutableList.of(v.getNode(vertexB));
+		}
 
-					if (unusedVertexNums.contains(j)) {
-						continue;
-					}
+		var nodeListBuilder = ImmutableList.<INode>builder();
+		v.reachabilityIndex.forEachLowestCommonAncestor(vertexA, vertexB, v.children,
+				ancestor -> nodeListBuilder.add(v.getNode(ancestor)));
 
-					if (adjacencyMatrix.get(i, j) > 0) {
-						var from = vertexNumToNode.get(i);
-						var to = vertexNumToNode.get(j);
+		return nodeListBuilder.build();
+	}
 
-						builder.put(from.getId(), to.getId());
-					}
+	@Override
+	public List<INode> commonDescendants(int nodeAId, int nodeBId) {
+		var v = version;
+		return commonDescendants(v, v.getVertexNum(nodeAId), v.getVertexNum(nodeBId));
+	}
 
-				}
-			}
+	@Override
+	public List<List<INode>> commonDescendants(int[] nodeAIds, int[] nodeBIds) {
+		if (nodeAIds.length != nodeBIds.length) {
+			throw new IllegalArgumentException("nodeAIds and nodeBIds must have the same length");
+		}
 
-			return builder.build();
-		} finally {
-			readWriteLock.readLock().unlock();
+		var v = version;
+		var results = ImmutableList.<List<INode>>builderWithExpectedSize(nodeAIds.length);
+		for (int i = 0; i < nodeAIds.length; i++) {
+			results.add(commonDescendants(v, v.getVertexNum(nodeAIds[i]), v.getVertexNum(nodeBIds[i])));
 		}
+
+		return results.build();
 	}
 
-	private void assertNodeExists(int nodeId) {
-		if (!nodeIdToVertexNum.containsKey(nodeId)) {
-			throw new NodeNotFoundException(nodeId);
+	private static List<INode> commonDescendants(GraphVersion v, int vertexA, int vertexB) {
+		var nodeListBuilder = ImmutableList.<INode>builder();
+
+		// if one node reaches the other, the common descendants are the lower node followed by its descendants
+		if (vertexA == vertexB || v.reachabilityIndex.reaches(vertexA, vertexB)) {
+			nodeListBuilder.add(v.getNode(vertexB));
+			v.reachabilityIndex.forEachDescendant(vertexB, descendant -> nodeListBuilder.add(v.getNode(descendant)));
+		} else if (v.reachabilityIndex.reaches(vertexB, vertexA)) {
+			nodeListBuilder.add(v.getNode(vertexA));
+			v.reachabilityIndex.forEachDescendant(vertexA, descendant -> nodeListBuilder.add(v.getNode(descendant)));
+		} else {
+			v.reachabilityIndex.forEachCommonDescendant(vertexA, vertexB,
+					descendant -> nodeListBuilder.add(v.getNode(descendant)));
 		}
+
+		return nodeListBuilder.build();
 	}
 
 	@Override
-	public void addNode(INode node) {
+	public void forEachDescendant(int nodeId, IntConsumer consumer) {
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
+		v.reachabilityIndex.forEachDescendant(vertexNum, descendant -> consumer.accept(v.getNode(descendant).getId()));
 	}
 
 	@Override
-	public void removeNode(int nodeId) {
-		readWriteLock.writeLock().lock();
-		try {
-			assertNodeExists(nodeId);
-			assertNodeIsALeaf(nodeId);
+	public void forEachAncestor(int nodeId, IntConsumer consumer) {
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
-			int rowId = nodeIdToVertexNum.get(nodeId);
-			int colId = nodeIdToVertexNum.get(nodeId);
+		v.reachabilityIndex.forEachAncestor(vertexNum, ancestor -> consumer.accept(v.getNode(ancestor).getId()));
+	}
 
-			for (int i = 0; i < reachabilityMatrix.numRows; i++) {
-				reachabilityMatrix.set(i, colId, 0);
-				adjacencyMatrix.set(i, colId, 0);
-			}
+	@Override
+	public int countDescendants(int nodeId) {
+		var v = version;
+		return v.reachabilityIndex.countDescendants(v.getVertexNum(nodeId));
+	}
 
-			for (int j = 0; j < reachabilityMatrix.numCols; j++) {
-				reachabilityMatrix.set(rowId, j, 0);
-				adjacencyMatrix.set(rowId, j, 0);
-			}
+	@Override
+	public int countAncestors(int nodeId) {
+		var v = version;
+		return v.reachabilityIndex.countAncestors(v.getVertexNum(nodeId));
+	}
 
-			unusedVertexNums.add(rowId);
-			nodeIdToNode.remove(nodeId);
-			nodeIdToVertexNum.remove(nodeId);
+	@Override
+	public long countPaths(int fromNodeId, int toNodeId) {
+		var paths = countPathsExact(fromNodeId, toNodeId);
 
-		} finally {
-			readWriteLock.writeLock().unlock();
+		return paths.bitLength() < Long.SIZE ? paths.longValue() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Counts the paths through the vertices between the two nodes only, in topological order. With the closure the
+	 * vertices between are found by intersecting two rows; with {@link ReachabilityBackend#TWO_HOP_LABELS} by a
+	 * search that only continues through vertices that reach the second node.
+	 */
+	@Override
+	public BigInteger countPathsExact(int fromNodeId, int toNodeId) {
+		var v = version;
+		if (v.allowsCycles()) {
+			throw new UnsupportedOperationException("Paths cannot be counted in a graph that allows cycles");
 		}
+
+		return GraphUtils.countPaths(v.reachabilityIndex, v.children, v.reachabilityFilter.topologicalOrder(),
+				v.getVertexNum(fromNodeId), v.getVertexNum(toNodeId));
 	}
 
-	private void assertNodeIsALeaf(int nodeId) {
+	@Override
+	public NodeIdCursor descendantCursor(int nodeId) {
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
+		return toNodeIdCursor(v, v.reachabilityIndex.descendantCursor(vertexNum));
 	}
 
-	private void assertEdgeDoesNotExist(int from, int to) {
+	@Override
+	public NodeIdCursor ancestorCursor(int nodeId) {
+		var v = version;
+		int vertexNum = v.getVertexNum(nodeId);
 
+		return toNodeIdCursor(v, v.reachabilityIndex.ancestorCursor(vertexNum));
 	}
 
-	private void assertPathDoesNotExist(int from, int to) {
+	@Override
+	public IntStream descendantIds(int nodeId) {
+		return descendantCursor(nodeId).stream();
+	}
 
+	@Override
+	public IntStream ancestorIds(int nodeId) {
+		return ancestorCursor(nodeId).stream();
 	}
 
-	private void assertMultiplePathsExist(int from, int to) {
+	/**
+	 * Translates the vertex numbers in place. The version is immutable, so the cursor keeps returning the nodes
+	 * it had when the cursor was opened.
+	 */
+	private static NodeIdCursor toNodeIdCursor(GraphVersion v, VertexCursor vertexCursor) {
+		return buffer -> {
+			int fetched = vertexCursor.next(buffer);
+
+			for (int i = 0; i < fetched; i++) {
+				buffer[i] = v.getNode(buffer[i]).getId();
+			}
 
+			return fetched;
+		};
 	}
 
+	/**
+	 * The order is maintained as edges are added, so reading it costs O(n) and never sorts.
+	 */
 	@Override
-	public void addEdge(int fromNodeId, int toNodeId) {
-		readWriteLock.writeLock().lock();
-		try {
+	public List<INode> topologicalOrder() {
+		var v = version;
+		if (v.allowsCycles()) {
+			throw new UnsupportedOperationException("A graph that allows cycles has no topological order");
+		}
+		var builder = ImmutableList.<INode>builder();
 
-			assertNodeExists(fromNodeId);
-			assertNodeExists(toNodeId);
-			assertEdgeDoesNotExist(fromNodeId, toNodeId);
-			// check for cycles
-			assertPathDoesNotExist(toNodeId, fromNodeId);
+		var order = v.reachabilityFilter.topologicalOrder();
+		for (int position = 0; position < order.size(); position++) {
+			var node = v.getNode(order.vertexAt(position));
+			if (node != null) {
+				builder.add(node);
+			}
+		}
 
-			int fromNodeIntegerId = nodeIdToVertexNum.get(fromNodeId);
-			int toNodeIntegerId = nodeIdToVertexNum.get(toNodeId);
+		return builder.build();
+	}
 
-			for (INode ancestor : getAncestors(fromNodeId)) {
-				int ancestorRowId = nodeIdToVertexNum.get(ancestor.getId());
-				for (int i = 0; i < n; i++) {
-					reachabilityMatrix.set(ancestorRowId, i, reachabilityMatrix.get(ancestorRowId, i) + reachabilityMatrix.get(toNodeIntegerId, i));
-				}
+	@Override
+	public List<INode> getNodes() {
+		var v = version;
+		var builder = ImmutableList.<INode>builder();
+
+		for (int i = 0; i < v.n; i++) {
+			if (v.getNode(i) != null) {
+				builder.add(v.getNode(i));
 			}
+		}
+
+		return builder.build();
+	}
+
+	@Override
+	public Multimap<Integer, Integer> getEdges() {
+		var v = version;
+		var builder = ImmutableMultimap.<Integer, Integer>builder();
 
-			for (INode descendant : getDescendants(toNodeId)) {
-				int descendantColId = nodeIdToVertexNum.get(descendant.getId());
-				for (int i = 0; i < n; i++) {
-					reachabilityMatrix.set(i, descendantColId, reachabilityMatrix.get(i, descendantColId) + reachabilityMatrix.get(i, fromNodeIntegerId));
-				}
+		for (int i = 0; i < v.n; i++) {
+
+			if (v.getNode(i) == null) {
+				continue;
 			}
 
-			reachabilityMatrix.set(fromNodeIntegerId, toNodeIntegerId, reachabilityMatrix.get(fromNodeIntegerId, toNodeIntegerId) + 1);
-			adjacencyMatrix.set(fromNodeIntegerId, toNodeIntegerId, 1);
+			var from = v.getNode(i);
 
-		} finally {
-			readWriteLock.writeLock().unlock();
+			v.children.forEachNeighbour(i, j -> builder.put(from.getId(), v.getNode(j).getId()));
 		}
+
+		return builder.build();
+	}
+
+	@Override
+	public void addNode(INode node) {
+		mutate(ImmutableList.of(Mutation.addNode(node)), next -> addNode(next, node));
+	}
+
+	@Override
+	public void removeNode(int nodeId) {
+		mutate(ImmutableList.of(Mutation.removeNode(nodeId)), next -> removeNode(next, nodeId, true));
+	}
+
+	@Override
+	public void addEdge(int fromNodeId, int toNodeId) {
+		mutate(ImmutableList.of(Mutation.addEdge(fromNodeId, toNodeId)), next -> addEdge(next, fromNodeId, toNodeId, true));
 	}
 
 	@Override
 	public void removeEdge(int fromNodeId, int toNodeId) {
-		readWriteLock.writeLock().lock();
+		mutate(ImmutableList.of(Mutation.removeEdge(fromNodeId, toNodeId)), next -> removeEdge(next, fromNodeId, toNodeId, true));
+	}
 
+	@Override
+	public void applyBatch(List<Mutation> mutations) {
+		mutate(mutations, next -> applyBatch(next, mutations));
+	}
+
+	/**
+	 * Applies a change to a fork of the current version and publishes it. With a mutation log, the mutations are
+	 * appended to the log before the fork is published, so a change that fails is neither published nor logged, and
+	 * the call returns once the log is durable. Waiting for the log happens outside the write lock, so writers that
+	 * append while an fsync is running share the next one.
+	 */
+	private void mutate(List<Mutation> mutations, Consumer<GraphVersion> change) {
+		assertWritable();
+		var log = mutationLog;
+		var sink = metricsSink;
+
+		long sequence;
+		long requested = sink != null ? System.nanoTime() : 0;
+		writeLock.lock();
+		long acquired = sink != null ? System.nanoTime() : 0;
 		try {
+			var next = version.fork();
+			change.accept(next);
 
-			assertNodeExists(fromNodeId);
-			assertNodeExists(toNodeId);
-			// check graph won't become disconnected
-			assertMultiplePathsExist(fromNodeId, toNodeId);
+			if (log != null) {
+				next.logSequence = log.append(mutations);
+			}
 
-			int fromNodeIntegerId = nodeIdToVertexNum.get(fromNodeId);
-			int toNodeIntegerId = nodeIdToVertexNum.get(toNodeId);
+			version = next;
+			sequence = next.logSequence;
+		} finally {
+			writeLock.unlock();
 
-			for (INode ancestor : getAncestors(fromNodeId)) {
-				int ancestorRowId = nodeIdToVertexNum.get(ancestor.getId());
-				for (int i = 0; i < n; i++) {
-					reachabilityMatrix.set(ancestorRowId, i, reachabilityMatrix.get(ancestorRowId, i) - reachabilityMatrix.get(toNodeIntegerId, i));
-				}
+			if (sink != null) {
+				sink.recordLockWait(acquired - requested);
+				sink.recordLockHold(System.nanoTime() - acquired);
 			}
+		}
+
+		if (log != null) {
+			log.awaitDurable(sequence);
+		}
+	}
+
+	/**
+	 * Applies mutations read back from a mutation log, without logging them again.
+	 */
+	void replay(List<Mutation> mutations, long sequence) {
+		writeLock.lock();
+		try {
+			var next = version.fork();
+			applyBatch(next, mutations);
+			next.logSequence = sequence;
+			version = next;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @param metricsSink receives the time mutations wait for and hold the write lock, or null to stop timing them
+	 */
+	void setMetricsSink(MetricsSink metricsSink) {
+		this.metricsSink = metricsSink;
+	}
+
+	/**
+	 * Caches the lists returned by {@link #getDescendants(int)} and {@link #getAncestors(int)}, up to the given number
+	 * of nodes in total. Snapshots do not use the cache.
+	 */
+	void cacheResults(long maximumNodes) {
+		resultCache = new ResultCache(maximumNodes);
+		resultCacheSize = maximumNodes;
+	}
+
+	/**
+	 * @return the hits, misses and evictions of the descendant and ancestor cache, if it is enabled
+	 */
+	public Optional<CacheStats> getResultCacheStats() {
+		var cache = resultCache;
+		return cache != null ? Optional.of(cache.stats()) : Optional.empty();
+	}
 
-			for (INode descendant : getDescendants(toNodeId)) {
-				int descendantColId = nodeIdToVertexNum.get(descendant.getId());
-				for (int i = 0; i < n; i++) {
-					reachabilityMatrix.set(i, descendantColId, reachabilityMatrix.get(i, descendantColId) - reachabilityMatrix.get(i, fromNodeIntegerId));
-				}
+	/**
+	 * @return how many {@link #doesPathExist} probes this graph and its snapshots have answered, and how many of the
+	 *     negative answers the reachability filter gave without reading the closure. A graph that allows cycles has
+	 *     no filter.
+	 */
+	public ReachabilityFilterStats getReachabilityFilterStats() {
+		return filterCounters.stats();
+	}
+
+	void setMutationLog(MutationLog mutationLog) {
+		assertWritable();
+		this.mutationLog = mutationLog;
+	}
+
+	/**
+	 * Applies the whole batch to a single fork. Small batches update the closure edge by edge; a batch with more edge
+	 * changes than {@link #INCREMENTAL_BATCH_RATIO} of the vertex count only updates the adjacency arrays and
+	 * rebuilds the closure once at the end.
+	 */
+	private void applyBatch(GraphVersion next, List<Mutation> mutations) {
+		int edgeMutations = 0;
+		for (var mutation : mutations) {
+			edgeMutations += mutation.isEdgeMutation() ? 1 : 0;
+		}
+
+		boolean incremental = edgeMutations <= INCREMENTAL_BATCH_RATIO * next.n;
+
+		for (var mutation : mutations) {
+			switch (mutation.getType()) {
+				case ADD_NODE:
+					addNode(next, mutation.getNode());
+					break;
+				case REMOVE_NODE:
+					removeNode(next, mutation.getFromNodeId(), incremental);
+					break;
+				case ADD_EDGE:
+					addEdge(next, mutation.getFromNodeId(), mutation.getToNodeId(), incremental);
+					break;
+				case REMOVE_EDGE:
+					removeEdge(next, mutation.getFromNodeId(), mutation.getToNodeId(), incremental);
+					break;
 			}
+		}
 
-			reachabilityMatrix.set(fromNodeIntegerId, toNodeIntegerId, reachabilityMatrix.get(fromNodeIntegerId, toNodeIntegerId) - 1);
+		if (!incremental) {
+			next.reachabilityIndex = next.reachabilityIndex.rebuild(next.children, next.parents);
 
-		} finally {
-			readWriteLock.writeLock().unlock();
+			var cache = resultCache;
+			if (cache != null) {
+				cache.invalidateAll(next.id);
+			}
 		}
 	}
 
+	/**
+	 * Reuses the vertex number of a removed node if there is one. Otherwise the vertex storage grows by one, which
+	 * is O(1) amortised since every structure grows its chunk directory by doubling.
+	 */
+	private void addNode(GraphVersion next, INode node) {
+		if (next.nodeIdToVertexNum.containsKey(node.getId())) {
+			throw new IllegalArgumentException(String.format("Multiple nodes with the given id: %d", node.getId()));
+		}
+
+		int vertexNum;
+		if (next.freeVertexNums.isEmpty()) {
+			vertexNum = next.n++;
+			next.vertexNumToNode.grow(next.n);
+			next.children.grow(next.n);
+			next.parents.grow(next.n);
+			if (!next.allowsCycles()) {
+				next.reachabilityFilter.append(vertexNum);
+			}
+		} else {
+			vertexNum = next.freeVertexNums.pop();
+		}
+
+		next.reachabilityIndex.addVertex(vertexNum);
+		invalidateResults(next, vertexNum, vertexNum);
+		next.vertexNumToNode.set(vertexNum, node);
+		next.nodeIdToVertexNum.put(node.getId(), vertexNum);
+	}
+
+	private void removeNode(GraphVersion next, int nodeId, boolean updateIndex) {
+		int vertexNum = next.getVertexNum(nodeId);
+
+		next.parents.forEachNeighbour(vertexNum, parent -> next.children.remove(parent, vertexNum));
+		next.children.forEachNeighbour(vertexNum, child -> next.parents.remove(child, vertexNum));
+		next.parents.removeAll(vertexNum);
+		next.children.removeAll(vertexNum);
+
+		if (updateIndex) {
+			invalidateResults(next, vertexNum, vertexNum);
+			next.reachabilityIndex.removeVertex(vertexNum, next.children);
+		}
+
+		next.vertexNumToNode.set(vertexNum, null);
+		next.nodeIdToVertexNum.remove(nodeId);
+		next.freeVertexNums.push(vertexNum);
+	}
+
+	private void addEdge(GraphVersion next, int fromNodeId, int toNodeId, boolean updateIndex) {
+		int fromNodeIntegerId = next.getVertexNum(fromNodeId);
+		int toNodeIntegerId = next.getVertexNum(toNodeId);
+		assertEdgeDoesNotExist(fromNodeId, toNodeId);
+		if (!next.allowsCycles() && !next.reachabilityFilter.addEdge(fromNodeIntegerId, toNodeIntegerId, next.children, next.parents)) {
+			throw new CycleDetectedException(fromNodeId, toNodeId);
+		}
+
+		next.children.add(fromNodeIntegerId, toNodeIntegerId);
+		next.parents.add(toNodeIntegerId, fromNodeIntegerId);
+
+		if (updateIndex) {
+			invalidateResults(next, fromNodeIntegerId, toNodeIntegerId);
+			next.reachabilityIndex.addEdge(fromNodeIntegerId, toNodeIntegerId);
+		}
+	}
+
+	private void removeEdge(GraphVersion next, int fromNodeId, int toNodeId, boolean updateIndex) {
+		int fromNodeIntegerId = next.getVertexNum(fromNodeId);
+		int toNodeIntegerId = next.getVertexNum(toNodeId);
+		// check graph won't become disconnected
+		assertMultiplePathsExist(fromNodeId, toNodeId);
+
+		boolean removed = next.children.remove(fromNodeIntegerId, toNodeIntegerId);
+		next.parents.remove(toNodeIntegerId, fromNodeIntegerId);
+
+		if (updateIndex && removed) {
+			invalidateResults(next, fromNodeIntegerId, toNodeIntegerId);
+			next.reachabilityIndex.removeEdge(fromNodeIntegerId, toNodeIntegerId, next.children);
+		}
+	}
+
+	/**
+	 * Invalidates the cached lists an edge between the vertices changes: the descendants of {@code fromVertex} and its
+	 * ancestors, and the ancestors of {@code toVertex} and its descendants. Passing one vertex twice covers adding or
+	 * removing that vertex. Must be called before the index is updated, while it still holds the pairs that change.
+	 */
+	private void invalidateResults(GraphVersion next, int fromVertex, int toVertex) {
+		var cache = resultCache;
+		if (cache == null) {
+			return;
+		}
+
+		cache.invalidate(ResultCache.DESCENDANTS, fromVertex, next.id);
+		next.reachabilityIndex.forEachAncestor(fromVertex, ancestor -> cache.invalidate(ResultCache.DESCENDANTS, ancestor, next.id));
+		cache.invalidate(ResultCache.ANCESTORS, toVertex, next.id);
+		next.reachabilityIndex.forEachDescendant(toVertex, descendant -> cache.invalidate(ResultCache.ANCESTORS, descendant, next.id));
+	}
+
+	private void assertWritable() {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Graph snapshots are read-only");
+		}
+	}
+
+	private void assertEdgeDoesNotExist(int from, int to) {
+
+	}
+
+	private void assertMultiplePathsExist(int from, int to) {
+
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		Graph graph = (Graph) o;
+		IGraph graph = ((Graph) o).snapshot();
+		IGraph self = snapshot();
 
-		return this.getNodes().equals(graph.getNodes()) && this.getEdges().equals(graph.getEdges());
+		return self.getNodes().equals(graph.getNodes()) && self.getEdges().equals(graph.getEdges());
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(getEdges(), getNodes());
+		IGraph self = snapshot();
+
+		return Objects.hash(self.getEdges(), self.getNodes());
 	}
 
 	public static GraphBuilder builder() {
 		return new GraphBuilder();
 	}
 
+	/**
+	 * Writes the reachability index of the current version with its vertices numbered in {@link #getNodes()} order,
+	 * for {@link GraphBuilder#reachabilityIndexFile(Path)} to map when building a graph from the same nodes, such as
+	 * {@link #toBuilder()}.
+	 */
+	public void writeReachabilityIndex(Path file) throws IOException {
+		var v = version;
+		if (v.allowsCycles()) {
+			throw new UnsupportedOperationException("The reachability index of a graph that allows cycles cannot be written");
+		}
+		ReachabilityIndexFile.write(file, v.reachabilityIndex, v.n, v.liveVertexNums());
+	}
+
+	/**
+	 * @return the number of (ancestor, descendant) pairs in the reachability index of the current version. Counting
+	 *     walks every row, or with {@link ReachabilityBackend#TWO_HOP_LABELS} searches the graph from every node.
+	 */
+	public long reachabilityIndexPairs() {
+		return version.reachabilityIndex.numPairs();
+	}
+
+	/**
+	 * @return the size in bytes of the reachability index of the current version, including rows it shares with
+	 *     earlier versions and rows mapped from a file
+	 */
+	public long reachabilityIndexBytes() {
+		return version.reachabilityIndex.sizeInBytes();
+	}
+
+	/**
+	 * @return the kind of reachability index the graph answers queries with
+	 */
+	public ReachabilityBackend reachabilityBackend() {
+		return version.reachabilityIndex instanceof TwoHopReachabilityIndex
+				? ReachabilityBackend.TWO_HOP_LABELS
+				: ReachabilityBackend.CLOSURE;
+	}
+
+	/**
+	 * @return a builder with the current nodes and edges and the options this graph was built with. The reachability
+	 *     index file is only carried over while the graph is unchanged, since it only matches the nodes it was built
+	 *     with.
+	 */
 	public GraphBuilder toBuilder() {
-		return new GraphBuilder(getNodes(), getEdges());
+		var self = (Graph) snapshot();
+		var v = self.version;
+
+		var builder = new GraphBuilder(self.getNodes(), self.getEdges()).parallelism(parallelism);
+		if (v.allowsCycles()) {
+			builder.allowCycles();
+		}
+		builder.reachabilityBackend(self.reachabilityBackend());
+		if (resultCacheSize > 0) {
+			builder.resultCacheSize(resultCacheSize);
+		}
+		if (reachabilityIndexFile != null && v.id == 0) {
+			builder.reachabilityIndexFile(reachabilityIndexFile);
+		}
+
+		return builder;
+	}
+
+	private static final class FilterCounters {
+		private final LongAdder probes = new LongAdder();
+		private final LongAdder rejections = new LongAdder();
+		private final LongAdder indexNegatives = new LongAdder();
+
+		void record(int probeCount, int rejectionCount, int indexNegativeCount) {
+			probes.add(probeCount);
+			if (rejectionCount > 0) {
+				rejections.add(rejectionCount);
+			}
+			if (indexNegativeCount > 0) {
+				indexNegatives.add(indexNegativeCount);
+			}
+		}
+
+		ReachabilityFilterStats stats() {
+			return new ReachabilityFilterStats(probes.sum(), rejections.sum(), indexNegatives.sum());
+		}
 	}
 }
@@ -6,12 +6,18 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 
+import java.nio.file.Path;
 import java.util.List;
 
 public class GraphBuilder {
 
 	ImmutableList.Builder<INode> vertices;
 	ImmutableMultimap.Builder<Integer, Integer> edges;
+	Path reachabilityIndexFile;
+	int parallelism = 1;
+	long resultCacheSize;
+	boolean allowCycles;
+	ReachabilityBackend reachabilityBackend = ReachabilityBackend.CLOSURE;
 
 	public GraphBuilder() {
 		vertices = ImmutableList.builder();
@@ -41,7 +47,74 @@ public class GraphBuilder {
 		return this;
 	}
 
+	/**
+	 * Maps the reachability index from a file written by {@link Graph#writeReachabilityIndex(Path)} instead of
+	 * computing it, so building takes milliseconds and rows are paged in as they are queried. The file must have been
+	 * written by a graph with the same nodes, in the order they are added here.
+	 */
+	public GraphBuilder reachabilityIndexFile(Path file) {
+		reachabilityIndexFile = file;
+		return this;
+	}
+
+	/**
+	 * Computes the reachability index on the given number of threads, building the rows of each topological level
+	 * concurrently. The default of 1 builds it on the calling thread.
+	 */
+	public GraphBuilder parallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException(String.format("Parallelism must be at least 1: %d", parallelism));
+		}
+
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Caches the lists returned by {@link Graph#getDescendants(int)} and {@link Graph#getAncestors(int)}, holding up
+	 * to the given number of nodes across all cached lists and evicting the least recently used lists first. A
+	 * mutation only invalidates the lists it changes.
+	 */
+	public GraphBuilder resultCacheSize(long maximumNodes) {
+		if (maximumNodes < 1) {
+			throw new IllegalArgumentException(String.format("Result cache size must be at least 1: %d", maximumNodes));
+		}
+
+		resultCacheSize = maximumNodes;
+		return this;
+	}
+
+	/**
+	 * Accepts edges that close cycles, here and in later mutations, instead of rejecting them. Strongly connected
+	 * components are condensed and the reachability index is built over the condensation, so a node reaches the
+	 * other nodes of its component. Such a graph keeps no topological order, cannot count paths and cannot be built
+	 * from a {@link #reachabilityIndexFile(Path)}.
+	 */
+	public GraphBuilder allowCycles() {
+		allowCycles = true;
+		return this;
+	}
+
+	/**
+	 * Chooses how the reachability index is stored. The default is {@link ReachabilityBackend#CLOSURE};
+	 * {@link ReachabilityBackend#TWO_HOP_LABELS} trades slower enumeration and removals for an index that stays small
+	 * on graphs whose closure does not fit in memory. 2-hop labels cannot be combined with {@link #allowCycles()} or
+	 * {@link #reachabilityIndexFile(Path)}, and ignore {@link #parallelism(int)}.
+	 */
+	public GraphBuilder reachabilityBackend(ReachabilityBackend backend) {
+		reachabilityBackend = backend;
+		return this;
+	}
+
 	public Graph build() {
-		return GraphUtils.constructGraph(vertices.build(), edges.build());
+		var graph = GraphUtils.constructGraph(vertices.build(), edges.build(), reachabilityIndexFile, parallelism, allowCycles,
+				reachabilityBackend);
+		graph.setBuildOptions(parallelism, reachabilityIndexFile);
+
+		if (resultCacheSize > 0) {
+			graph.cacheResults(resultCacheSize);
+		}
+
+		return graph;
 	}
 }
@@ -0,0 +1,215 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import Reacher.domain.Node;
+import Reacher.index.AdjacencyArrays;
+import Reacher.index.BitmapReachabilityIndex;
+import Reacher.index.CondensedReachabilityIndex;
+import Reacher.index.ReachabilityIndex;
+import Reacher.index.ReachabilityIndexFile;
+import Reacher.index.TwoHopReachabilityIndex;
+import Reacher.utils.GraphUtils;
+import Reacher.utils.SegmentedIntIntMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a graph to a file and loads it back without going through {@link GraphBuilder}.
+ *
+ * <p>A snapshot starts with a fixed header: a magic number, the format version, flags, the number of nodes, the number
+ * of edges, a reserved int and the position where the graph section ends. The graph section holds the node ids in
+ * vertex order, as zigzag varints of the difference to the previous id, followed by the children of every vertex: the
+ * degree as a varint and then the sorted children as varint gaps. If the reachability index is included it follows
+ * the graph section in the {@link ReachabilityIndexFile} format and is mapped on load rather than read. The index of a
+ * graph that allows cycles is never included; a flag marks such a graph and its condensation is rebuilt on load. Nor
+ * are 2-hop labels, which another flag marks and which are rebuilt on load.
+ *
+ * <p>Nodes are stored by id only and are loaded as {@link Node}s.
+ */
+public final class GraphSnapshot {
+
+	private static final int MAGIC = 0x52434847;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	private static final int INCLUDES_REACHABILITY_INDEX = 1;
+	private static final int ALLOWS_CYCLES = 2;
+	private static final int TWO_HOP_LABELS = 4;
+
+	private GraphSnapshot() {
+	}
+
+	public static void write(Graph graph, Path file) throws IOException {
+		write(graph, file, true);
+	}
+
+	/**
+	 * @param includeReachabilityIndex whether to save the closure, so loading maps it instead of recomputing it
+	 */
+	public static void write(Graph graph, Path file, boolean includeReachabilityIndex) throws IOException {
+		write(graph.currentVersion(), file, includeReachabilityIndex);
+	}
+
+	static void write(GraphVersion v, Path file, boolean includeReachabilityIndex) throws IOException {
+		// the condensed index of a graph that allows cycles, and 2-hop labels, are rebuilt on load
+		boolean twoHopLabels = v.reachabilityIndex instanceof TwoHopReachabilityIndex;
+		includeReachabilityIndex &= !v.allowsCycles() && !twoHopLabels;
+		int[] vertices = v.liveVertexNums();
+
+		// removed nodes leave gaps in the vertex numbers, which the snapshot closes
+		int[] renumbered = new int[v.n];
+		int numEdges = 0;
+		for (int i = 0; i < vertices.length; i++) {
+			renumbered[vertices[i]] = i;
+			numEdges += v.children.degree(vertices[i]);
+		}
+
+		try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+			var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+			int previousId = 0;
+			for (int vertex : vertices) {
+				int id = v.getNode(vertex).getId();
+				writeVarint(out, (id - previousId) << 1 ^ (id - previousId) >> 31);
+				previousId = id;
+			}
+
+			for (int vertex : vertices) {
+				writeVarint(out, v.children.degree(vertex));
+
+				int previous = 0;
+				for (int child : v.children.neighbours(vertex)) {
+					writeVarint(out, renumbered[child] - previous);
+					previous = renumbered[child];
+				}
+			}
+			out.flush();
+
+			long graphSectionEnd = channel.position();
+			if (includeReachabilityIndex) {
+				ReachabilityIndexFile.write(channel, graphSectionEnd, v.reachabilityIndex, v.n, vertices);
+			}
+
+			var header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putInt((includeReachabilityIndex ? INCLUDES_REACHABILITY_INDEX : 0) | (v.allowsCycles() ? ALLOWS_CYCLES : 0)
+					| (twoHopLabels ? TWO_HOP_LABELS : 0));
+			header.putInt(vertices.length);
+			header.putInt(numEdges);
+			header.putInt(0);
+			header.putLong(graphSectionEnd);
+			header.flip();
+
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			channel.force(true);
+		}
+	}
+
+	public static Graph read(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not a graph snapshot: " + file);
+			}
+
+			var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a graph snapshot: " + file);
+			}
+			int formatVersion = header.getInt();
+			if (formatVersion != FORMAT_VERSION) {
+				throw new IOException(String.format("Unsupported graph snapshot format version: %d", formatVersion));
+			}
+			int flags = header.getInt();
+			int n = header.getInt();
+			int m = header.getInt();
+			header.getInt();
+			long graphSectionEnd = header.getLong();
+
+			if (graphSectionEnd - HEADER_SIZE > Integer.MAX_VALUE) {
+				throw new IOException("Graph sections larger than 2 GiB are not supported");
+			}
+			var in = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, graphSectionEnd - HEADER_SIZE);
+
+			var nodes = new INode[n];
+			var nodeIdToVertexNum = new SegmentedIntIntMap(n);
+			int id = 0;
+			for (int vertex = 0; vertex < n; vertex++) {
+				int delta = readVarint(in);
+				id += delta >>> 1 ^ -(delta & 1);
+				nodes[vertex] = new Node(id);
+				nodeIdToVertexNum.put(id, vertex);
+			}
+
+			int[] sources = new int[m];
+			int[] targets = new int[m];
+			int e = 0;
+			for (int vertex = 0; vertex < n; vertex++) {
+				int degree = readVarint(in);
+
+				int child = 0;
+				for (int i = 0; i < degree; i++) {
+					child += readVarint(in);
+					sources[e] = vertex;
+					targets[e] = child;
+					e++;
+				}
+			}
+
+			var children = AdjacencyArrays.fromEdges(n, sources, targets, m);
+			var parents = AdjacencyArrays.fromEdges(n, targets, sources, m);
+
+			boolean allowCycles = (flags & ALLOWS_CYCLES) != 0;
+			ReachabilityIndex reachabilityIndex;
+			if (allowCycles) {
+				reachabilityIndex = CondensedReachabilityIndex.build(children);
+			} else if ((flags & TWO_HOP_LABELS) != 0) {
+				reachabilityIndex = TwoHopReachabilityIndex.build(children, parents);
+			} else if ((flags & INCLUDES_REACHABILITY_INDEX) != 0) {
+				var indexFile = ReachabilityIndexFile.open(channel, graphSectionEnd);
+				if (indexFile.numVertices() != n) {
+					throw new IOException(String.format(
+							"Reachability index has %d vertices but the snapshot has %d nodes", indexFile.numVertices(), n));
+				}
+				reachabilityIndex = BitmapReachabilityIndex.mapped(indexFile);
+			} else {
+				reachabilityIndex = GraphUtils.constructReachabilityIndex(children, parents);
+			}
+
+			return new Graph(n, nodes, nodeIdToVertexNum, children, parents, reachabilityIndex, allowCycles);
+		}
+	}
+
+	private static void writeVarint(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = in.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		return value;
+	}
+}
@@ -0,0 +1,100 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import Reacher.domain.exceptions.NodeNotFoundException;
+import Reacher.index.AdjacencyArrays;
+import Reacher.index.ReachabilityFilter;
+import Reacher.index.ReachabilityIndex;
+import Reacher.utils.ChunkedArray;
+import Reacher.utils.IntStack;
+import Reacher.utils.SegmentedIntIntMap;
+
+import java.util.stream.IntStream;
+
+/**
+ * One state of a {@link Graph}. A version is never modified once it has been published: writers {@link #fork()} the
+ * current version, mutate the fork and publish it in its place. Forks share every chunk, block and row they do not
+ * modify with the version they were forked from.
+ */
+final class GraphVersion {
+
+	static final int NO_VERTEX = -1;
+
+	// the number of vertex numbers in use, including freed ones
+	int n;
+	// indexed by vertex number, null once the vertex's node has been removed
+	final ChunkedArray<INode> vertexNumToNode;
+	// vertex numbers of removed nodes, which addNode hands out before growing n
+	final IntStack freeVertexNums;
+	final SegmentedIntIntMap nodeIdToVertexNum;
+	final AdjacencyArrays children;
+	final AdjacencyArrays parents;
+	ReachabilityIndex reachabilityIndex;
+	// null if the graph allows cycles
+	final ReachabilityFilter reachabilityFilter;
+	// the sequence number of the last logged mutation this version includes
+	long logSequence;
+	// one more than the id of the version this one was forked from
+	long id;
+
+	GraphVersion(
+			int n,
+			ChunkedArray<INode> vertexNumToNode,
+			IntStack freeVertexNums,
+			SegmentedIntIntMap nodeIdToVertexNum,
+			AdjacencyArrays children,
+			AdjacencyArrays parents,
+			ReachabilityIndex reachabilityIndex,
+			ReachabilityFilter reachabilityFilter) {
+
+		this.n = n;
+		this.vertexNumToNode = vertexNumToNode;
+		this.freeVertexNums = freeVertexNums;
+		this.nodeIdToVertexNum = nodeIdToVertexNum;
+		this.children = children;
+		this.parents = parents;
+		this.reachabilityIndex = reachabilityIndex;
+		this.reachabilityFilter = reachabilityFilter;
+	}
+
+	GraphVersion fork() {
+		var fork = new GraphVersion(
+				n,
+				vertexNumToNode.fork(),
+				freeVertexNums.fork(),
+				nodeIdToVertexNum.fork(),
+				children.fork(),
+				parents.fork(),
+				reachabilityIndex.fork(),
+				reachabilityFilter != null ? reachabilityFilter.fork() : null);
+		fork.logSequence = logSequence;
+		fork.id = id + 1;
+
+		return fork;
+	}
+
+	int getVertexNum(int nodeId) {
+		int vertexNum = nodeIdToVertexNum.get(nodeId, NO_VERTEX);
+
+		if (vertexNum == NO_VERTEX) {
+			throw new NodeNotFoundException(nodeId);
+		}
+
+		return vertexNum;
+	}
+
+	boolean allowsCycles() {
+		return reachabilityFilter == null;
+	}
+
+	INode getNode(int vertexNum) {
+		return vertexNumToNode.get(vertexNum);
+	}
+
+	/**
+	 * @return the vertex numbers that have a node, in ascending order, which is the order of {@link Graph#getNodes()}
+	 */
+	int[] liveVertexNums() {
+		return IntStream.range(0, n).filter(vertexNum -> getNode(vertexNum) != null).toArray();
+	}
+}
@@ -0,0 +1,393 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import Reacher.domain.Mutation;
+import Reacher.metrics.MetricsSink;
+import Reacher.metrics.Operation;
+import Reacher.service.IGraph;
+import Reacher.service.NodeIdCursor;
+import com.google.common.collect.Multimap;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Times every call to a graph and records its latency and result size in a {@link MetricsSink}, along with the time
+ * mutations wait for and hold the graph's write lock. Instrumentation is opt-in: a graph that is not wrapped only
+ * checks a null field per mutation. Recording reads {@link System#nanoTime()} twice per call and never allocates.
+ *
+ * <p>A call that throws still records its latency, but no result size. Cursors and streams are lazy, so only the
+ * time to create them is recorded.
+ */
+public class InstrumentedGraph implements IGraph {
+
+	private final IGraph graph;
+	private final MetricsSink sink;
+
+	/**
+	 * Starts recording the graph's lock times in the sink. Mutations made through the graph rather than this wrapper
+	 * are included in the lock times too.
+	 */
+	public InstrumentedGraph(Graph graph, MetricsSink sink) {
+		this((IGraph) graph, sink);
+		graph.setMetricsSink(sink);
+	}
+
+	private InstrumentedGraph(IGraph graph, MetricsSink sink) {
+		this.graph = graph;
+		this.sink = sink;
+	}
+
+	/**
+	 * Stops recording the lock times of the graph.
+	 */
+	public static void uninstrument(Graph graph) {
+		graph.setMetricsSink(null);
+	}
+
+	@Override
+	public IGraph snapshot() {
+		long start = System.nanoTime();
+		IGraph snapshot;
+		try {
+			snapshot = graph.snapshot();
+		} finally {
+			sink.recordLatency(Operation.SNAPSHOT, System.nanoTime() - start);
+		}
+
+		return new InstrumentedGraph(snapshot, sink);
+	}
+
+	@Override
+	public Optional<INode> getNode(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.getNode(nodeId);
+		} finally {
+			sink.recordLatency(Operation.GET_NODE, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getChildren(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_CHILDREN, graph.getChildren(nodeId));
+		} finally {
+			sink.recordLatency(Operation.GET_CHILDREN, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getParents(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_PARENTS, graph.getParents(nodeId));
+		} finally {
+			sink.recordLatency(Operation.GET_PARENTS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getAncestors(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_ANCESTORS, graph.getAncestors(nodeId));
+		} finally {
+			sink.recordLatency(Operation.GET_ANCESTORS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getDescendants(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_DESCENDANTS, graph.getDescendants(nodeId));
+		} finally {
+			sink.recordLatency(Operation.GET_DESCENDANTS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean doesPathExist(int nodeAId, int nodeBId) {
+		long start = System.nanoTime();
+		try {
+			return graph.doesPathExist(nodeAId, nodeBId);
+		} finally {
+			sink.recordLatency(Operation.DOES_PATH_EXIST, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public BitSet doesPathExist(int[] fromNodeIds, int[] toNodeIds) {
+		long start = System.nanoTime();
+		try {
+			var answers = graph.doesPathExist(fromNodeIds, toNodeIds);
+			sink.recordResultSize(Operation.DOES_PATH_EXIST_BATCH, fromNodeIds.length);
+
+			return answers;
+		} finally {
+			sink.recordLatency(Operation.DOES_PATH_EXIST_BATCH, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getDescendantsOfAll(int[] nodeIds) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_DESCENDANTS_OF_ALL, graph.getDescendantsOfAll(nodeIds));
+		} finally {
+			sink.recordLatency(Operation.GET_DESCENDANTS_OF_ALL, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getAncestorsOfAll(int[] nodeIds) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_ANCESTORS_OF_ALL, graph.getAncestorsOfAll(nodeIds));
+		} finally {
+			sink.recordLatency(Operation.GET_ANCESTORS_OF_ALL, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> lowestCommonAncestors(int nodeAId, int nodeBId) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.LOWEST_COMMON_ANCESTORS, graph.lowestCommonAncestors(nodeAId, nodeBId));
+		} finally {
+			sink.recordLatency(Operation.LOWEST_COMMON_ANCESTORS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<List<INode>> lowestCommonAncestors(int[] nodeAIds, int[] nodeBIds) {
+		long start = System.nanoTime();
+		try {
+			var answers = graph.lowestCommonAncestors(nodeAIds, nodeBIds);
+			sink.recordResultSize(Operation.LOWEST_COMMON_ANCESTORS_BATCH, nodeAIds.length);
+
+			return answers;
+		} finally {
+			sink.recordLatency(Operation.LOWEST_COMMON_ANCESTORS_BATCH, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> commonDescendants(int nodeAId, int nodeBId) {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.COMMON_DESCENDANTS, graph.commonDescendants(nodeAId, nodeBId));
+		} finally {
+			sink.recordLatency(Operation.COMMON_DESCENDANTS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<List<INode>> commonDescendants(int[] nodeAIds, int[] nodeBIds) {
+		long start = System.nanoTime();
+		try {
+			var answers = graph.commonDescendants(nodeAIds, nodeBIds);
+			sink.recordResultSize(Operation.COMMON_DESCENDANTS_BATCH, nodeAIds.length);
+
+			return answers;
+		} finally {
+			sink.recordLatency(Operation.COMMON_DESCENDANTS_BATCH, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void forEachDescendant(int nodeId, IntConsumer consumer) {
+		long start = System.nanoTime();
+		try {
+			graph.forEachDescendant(nodeId, consumer);
+		} finally {
+			sink.recordLatency(Operation.FOR_EACH_DESCENDANT, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void forEachAncestor(int nodeId, IntConsumer consumer) {
+		long start = System.nanoTime();
+		try {
+			graph.forEachAncestor(nodeId, consumer);
+		} finally {
+			sink.recordLatency(Operation.FOR_EACH_ANCESTOR, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public int countDescendants(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.countDescendants(nodeId);
+		} finally {
+			sink.recordLatency(Operation.COUNT_DESCENDANTS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public int countAncestors(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.countAncestors(nodeId);
+		} finally {
+			sink.recordLatency(Operation.COUNT_ANCESTORS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public long countPaths(int fromNodeId, int toNodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.countPaths(fromNodeId, toNodeId);
+		} finally {
+			sink.recordLatency(Operation.COUNT_PATHS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public BigInteger countPathsExact(int fromNodeId, int toNodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.countPathsExact(fromNodeId, toNodeId);
+		} finally {
+			sink.recordLatency(Operation.COUNT_PATHS_EXACT, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public NodeIdCursor descendantCursor(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.descendantCursor(nodeId);
+		} finally {
+			sink.recordLatency(Operation.DESCENDANT_CURSOR, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public NodeIdCursor ancestorCursor(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.ancestorCursor(nodeId);
+		} finally {
+			sink.recordLatency(Operation.ANCESTOR_CURSOR, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public IntStream descendantIds(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.descendantIds(nodeId);
+		} finally {
+			sink.recordLatency(Operation.DESCENDANT_IDS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public IntStream ancestorIds(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			return graph.ancestorIds(nodeId);
+		} finally {
+			sink.recordLatency(Operation.ANCESTOR_IDS, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> topologicalOrder() {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.TOPOLOGICAL_ORDER, graph.topologicalOrder());
+		} finally {
+			sink.recordLatency(Operation.TOPOLOGICAL_ORDER, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public List<INode> getNodes() {
+		long start = System.nanoTime();
+		try {
+			return recordSize(Operation.GET_NODES, graph.getNodes());
+		} finally {
+			sink.recordLatency(Operation.GET_NODES, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public Multimap<Integer, Integer> getEdges() {
+		long start = System.nanoTime();
+		try {
+			var edges = graph.getEdges();
+			sink.recordResultSize(Operation.GET_EDGES, edges.size());
+
+			return edges;
+		} finally {
+			sink.recordLatency(Operation.GET_EDGES, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void addNode(INode node) {
+		long start = System.nanoTime();
+		try {
+			graph.addNode(node);
+		} finally {
+			sink.recordLatency(Operation.ADD_NODE, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void removeNode(int nodeId) {
+		long start = System.nanoTime();
+		try {
+			graph.removeNode(nodeId);
+		} finally {
+			sink.recordLatency(Operation.REMOVE_NODE, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void addEdge(int fromNodeId, int toNodeId) {
+		long start = System.nanoTime();
+		try {
+			graph.addEdge(fromNodeId, toNodeId);
+		} finally {
+			sink.recordLatency(Operation.ADD_EDGE, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void removeEdge(int fromNodeId, int toNodeId) {
+		long start = System.nanoTime();
+		try {
+			graph.removeEdge(fromNodeId, toNodeId);
+		} finally {
+			sink.recordLatency(Operation.REMOVE_EDGE, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void applyBatch(List<Mutation> mutations) {
+		long start = System.nanoTime();
+		try {
+			graph.applyBatch(mutations);
+			sink.recordResultSize(Operation.APPLY_BATCH, mutations.size());
+		} finally {
+			sink.recordLatency(Operation.APPLY_BATCH, System.nanoTime() - start);
+		}
+	}
+
+	private List<INode> recordSize(Operation operation, List<INode> result) {
+		sink.recordResultSize(operation, result.size());
+
+		return result;
+	}
+}
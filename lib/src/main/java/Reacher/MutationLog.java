@@ -0,0 +1,422 @@
+package Reacher;
+
+import Reacher.domain.Mutation;
+import Reacher.domain.Node;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead log of the mutations of one {@link Graph}, kept in a directory together with checkpoints of the graph.
+ * Each mutation, or each batch applied with {@link Graph#applyBatch(List)}, is appended as one record before the
+ * graph publishes it, and the mutating call returns once the record has been fsynced. Writers that append while an
+ * fsync is in flight wait for the next one, so concurrent writers share fsyncs.
+ *
+ * <p>Records are appended to segment files that are preallocated to a fixed size, so an fsync does not have to
+ * update the file size. A record is its payload length, the CRC32 of its payload, and the payload: the sequence
+ * number, the number of mutations and each mutation as a type and two node ids. A zero length marks the end of a
+ * segment's records, and a record with a bad checksum is a torn write from a crash and ends the segment too.
+ *
+ * <p>A checkpoint is a {@link GraphSnapshot} of the graph named after the last sequence number it includes.
+ * Checkpoints are taken every {@code checkpointInterval} records, after which older checkpoints and the segments they
+ * cover are deleted. {@link #recover(Path)} loads the latest checkpoint and replays the records after it.
+ *
+ * <p>A published change is visible to readers before its record is durable, so after a crash readers may have seen
+ * changes whose mutating call never returned.
+ */
+public class MutationLog implements Closeable {
+
+	public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String CHECKPOINT_PREFIX = "checkpoint-";
+	private static final String CHECKPOINT_SUFFIX = ".snapshot";
+
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int MUTATION_SIZE = 9;
+
+	private final Path directory;
+	private final Graph graph;
+	private final long segmentSize;
+	private final int checkpointInterval;
+
+	// appends are serialised by the graph's write lock
+	private volatile FileChannel segment;
+	private long segmentPosition;
+	private long nextSequence;
+	private volatile long appendedSequence;
+	private volatile long recordsSinceCheckpoint;
+
+	// guarded by this
+	private long durableSequence;
+	private boolean syncInProgress;
+
+	private final AtomicBoolean checkpointInProgress = new AtomicBoolean();
+	private final Object checkpointLock = new Object();
+
+	private MutationLog(Path directory, Graph graph, long segmentSize, int checkpointInterval, long lastSequence) throws IOException {
+		this.directory = directory;
+		this.graph = graph;
+		this.segmentSize = segmentSize;
+		this.checkpointInterval = checkpointInterval;
+		this.nextSequence = lastSequence + 1;
+		this.appendedSequence = lastSequence;
+		this.durableSequence = lastSequence;
+		this.segment = openSegment(nextSequence, segmentSize);
+
+		graph.setMutationLog(this);
+	}
+
+	/**
+	 * Starts logging the mutations of the graph in an empty directory, with the graph's current state as the first
+	 * checkpoint.
+	 */
+	public static MutationLog create(Path directory, Graph graph) throws IOException {
+		return create(directory, graph, DEFAULT_SEGMENT_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	public static MutationLog create(Path directory, Graph graph, long segmentSize, int checkpointInterval) throws IOException {
+		Files.createDirectories(directory);
+		if (!listFiles(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX).isEmpty()) {
+			throw new IllegalArgumentException("Directory already holds a mutation log: " + directory);
+		}
+
+		var version = graph.currentVersion();
+		writeCheckpoint(directory, version);
+
+		return new MutationLog(directory, graph, segmentSize, checkpointInterval, version.logSequence);
+	}
+
+	/**
+	 * Loads the latest checkpoint in the directory, replays the records logged after it and continues logging the
+	 * mutations of the returned graph.
+	 */
+	public static MutationLog recover(Path directory) throws IOException {
+		return recover(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	public static MutationLog recover(Path directory, long segmentSize, int checkpointInterval) throws IOException {
+		var checkpoints = listFiles(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+		if (checkpoints.isEmpty()) {
+			throw new IOException("No checkpoint in " + directory);
+		}
+
+		var latest = checkpoints.lastEntry();
+		var graph = GraphSnapshot.read(latest.getValue());
+		long lastSequence = latest.getKey();
+		// the graph is not shared yet, so its version can be stamped in place
+		graph.currentVersion().logSequence = lastSequence;
+
+		for (Path segmentFile : listFiles(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX).values()) {
+			lastSequence = replay(segmentFile, graph, lastSequence);
+		}
+
+		return new MutationLog(directory, graph, segmentSize, checkpointInterval, lastSequence);
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Appends a record without waiting for it to become durable. Called under the graph's write lock.
+	 *
+	 * @return the record's sequence number
+	 */
+	long append(List<Mutation> mutations) {
+		long sequence = nextSequence;
+
+		var record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 12 + MUTATION_SIZE * mutations.size());
+		record.position(RECORD_HEADER_SIZE);
+		record.putLong(sequence);
+		record.putInt(mutations.size());
+		for (var mutation : mutations) {
+			record.put((byte) mutation.getType().ordinal());
+			record.putInt(mutation.getFromNodeId());
+			record.putInt(mutation.getToNodeId());
+		}
+
+		var crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+		record.putInt(0, record.capacity() - RECORD_HEADER_SIZE);
+		record.putInt(4, (int) crc.getValue());
+		record.rewind();
+
+		try {
+			// the zero length after the last record must fit in the segment too
+			if (segmentPosition + record.capacity() + 4 > segmentSize) {
+				rollSegment(sequence, record.capacity() + 4);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		long start = segmentPosition;
+		try {
+			while (record.hasRemaining()) {
+				segment.write(record, start + record.position());
+			}
+		} catch (IOException e) {
+			// zero whatever part of the record was written, so the next record is written in its place rather than
+			// after bytes that would end replay at its checksum
+			try {
+				segment.write(ByteBuffer.allocate(record.capacity()), start);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw new UncheckedIOException(e);
+		}
+		segmentPosition = start + record.capacity();
+
+		nextSequence++;
+		recordsSinceCheckpoint++;
+		appendedSequence = sequence;
+
+		return sequence;
+	}
+
+	/**
+	 * Returns once the record with the given sequence number is durable. If no fsync is running, the caller runs one
+	 * covering every record appended so far; otherwise it waits for the running fsync and checks again.
+	 */
+	void awaitDurable(long sequence) {
+		try {
+			synchronized (this) {
+				while (durableSequence < sequence) {
+					if (!syncInProgress) {
+						syncInProgress = true;
+						break;
+					}
+					wait();
+				}
+
+				if (durableSequence >= sequence) {
+					return;
+				}
+			}
+
+			long target = appendedSequence;
+			boolean synced = false;
+			try {
+				segment.force(false);
+				synced = true;
+			} catch (ClosedChannelException e) {
+				// the segment was rolled, and rolling forced it after every record up to the target was written
+				synced = true;
+			} finally {
+				synchronized (this) {
+					syncInProgress = false;
+					if (synced) {
+						durableSequence = Math.max(durableSequence, target);
+					}
+					notifyAll();
+				}
+			}
+
+			if (recordsSinceCheckpoint >= checkpointInterval && checkpointInProgress.compareAndSet(false, true)) {
+				try {
+					checkpoint();
+				} finally {
+					checkpointInProgress.set(false);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the mutation log"));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the graph's current version as a checkpoint, then deletes older checkpoints and every segment whose
+	 * records the checkpoint includes.
+	 */
+	public void checkpoint() throws IOException {
+		synchronized (checkpointLock) {
+			var version = graph.currentVersion();
+			recordsSinceCheckpoint = 0;
+
+			writeCheckpoint(directory, version);
+			deleteCoveredFiles(version.logSequence);
+		}
+	}
+
+	private void deleteCoveredFiles(long checkpointSequence) throws IOException {
+
+		for (var checkpoint : listFiles(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX).headMap(checkpointSequence).values()) {
+			Files.deleteIfExists(checkpoint);
+		}
+
+		// a segment only holds records up to the first sequence number of the next segment
+		var segments = new ArrayList<>(listFiles(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX).entrySet());
+		for (int i = 0; i + 1 < segments.size(); i++) {
+			if (segments.get(i + 1).getKey() <= checkpointSequence + 1) {
+				Files.deleteIfExists(segments.get(i).getValue());
+			}
+		}
+	}
+
+	/**
+	 * Detaches the log from the graph, which keeps its state but no longer logs its mutations.
+	 */
+	@Override
+	public void close() throws IOException {
+		graph.setMutationLog(null);
+		segment.force(false);
+		segment.close();
+	}
+
+	private void rollSegment(long firstSequence, long minimumSize) throws IOException {
+		// records in the old segment must be durable before any record in the new one is
+		segment.force(false);
+		segment.close();
+
+		segment = openSegment(firstSequence, Math.max(segmentSize, minimumSize));
+		segmentPosition = 0;
+	}
+
+	/**
+	 * Opens the segment whose first record will have the given sequence number. A segment with that name is left over
+	 * when the previous session logged nothing after it was opened, or its first record was torn, so it holds no
+	 * record that was replayed. It is emptied, since records after a torn one may still be intact and would otherwise
+	 * be replayed after the records of this session.
+	 */
+	private FileChannel openSegment(long firstSequence, long size) throws IOException {
+		var file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+		var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			channel.truncate(0);
+
+			// extending the file writes no data, but fixes its size so that appends only change its contents
+			channel.write(ByteBuffer.allocate(1), size - 1);
+			channel.force(true);
+			syncDirectory(directory);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		return channel;
+	}
+
+	private static void writeCheckpoint(Path directory, GraphVersion version) throws IOException {
+		var file = directory.resolve(String.format("%s%020d%s", CHECKPOINT_PREFIX, version.logSequence, CHECKPOINT_SUFFIX));
+		var temporary = directory.resolve(file.getFileName() + ".tmp");
+
+		GraphSnapshot.write(version, temporary, true);
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		// the rename must be durable before the files the checkpoint covers are deleted
+		syncDirectory(directory);
+	}
+
+	/**
+	 * Makes the creation, renaming and deletion of files in the directory durable.
+	 */
+	private static void syncDirectory(Path directory) throws IOException {
+		try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Applies the records of one segment that come after the given sequence number. Replay stops at a gap in the
+	 * sequence numbers, as the records after it were not logged against the state replayed so far.
+	 *
+	 * @return the last sequence number applied
+	 */
+	private static long replay(Path segmentFile, Graph graph, long lastSequence) throws IOException {
+		try (var channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+			var in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			var crc = new CRC32();
+
+			while (in.remaining() >= RECORD_HEADER_SIZE) {
+				int length = in.getInt();
+				int checksum = in.getInt();
+				if (length <= 0 || length > in.remaining()) {
+					break;
+				}
+
+				var payload = in.slice();
+				payload.limit(length);
+				crc.reset();
+				crc.update(payload.duplicate());
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				in.position(in.position() + length);
+
+				long sequence = payload.getLong();
+				int count = payload.getInt();
+				if (sequence <= lastSequence) {
+					continue;
+				}
+				if (sequence != lastSequence + 1) {
+					break;
+				}
+
+				var mutations = new ArrayList<Mutation>(count);
+				for (int i = 0; i < count; i++) {
+					mutations.add(readMutation(Mutation.Type.values()[payload.get()], payload.getInt(), payload.getInt()));
+				}
+
+				graph.replay(mutations, sequence);
+				lastSequence = sequence;
+			}
+		}
+
+		return lastSequence;
+	}
+
+	private static Mutation readMutation(Mutation.Type type, int fromNodeId, int toNodeId) {
+		switch (type) {
+			case ADD_NODE:
+				return Mutation.addNode(new Node(fromNodeId));
+			case REMOVE_NODE:
+				return Mutation.removeNode(fromNodeId);
+			case ADD_EDGE:
+				return Mutation.addEdge(fromNodeId, toNodeId);
+			default:
+				return Mutation.removeEdge(fromNodeId, toNodeId);
+		}
+	}
+
+	/**
+	 * @return the files with the given prefix and suffix, by the sequence number between the two
+	 */
+	private static TreeMap<Long, Path> listFiles(Path directory, String prefix, String suffix) throws IOException {
+		try (var files = Files.list(directory)) {
+			return files
+					.filter(file -> {
+						String name = file.getFileName().toString();
+						return name.startsWith(prefix) && name.endsWith(suffix);
+					})
+					.collect(Collectors.toMap(
+							file -> {
+								String name = file.getFileName().toString();
+								return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+							},
+							file -> file,
+							(a, b) -> a,
+							TreeMap::new));
+		}
+	}
+}
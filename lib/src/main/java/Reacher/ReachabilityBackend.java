@@ -0,0 +1,21 @@
+package Reacher;
+
+/**
+ * How the reachability index of a graph that does not allow cycles is stored, chosen with
+ * {@link GraphBuilder#reachabilityBackend(ReachabilityBackend)}.
+ */
+public enum ReachabilityBackend {
+
+	/**
+	 * The full transitive closure as a bitmap of descendants and one of ancestors per node. Every query reads a
+	 * single row, but the closure can grow quadratically with the number of nodes.
+	 */
+	CLOSURE,
+
+	/**
+	 * 2-hop labels built by pruned landmark labeling, usually much smaller than the closure. Path probes intersect two
+	 * short sorted labels; listing or counting descendants and ancestors searches the graph instead of reading a row,
+	 * and removing an edge or node rebuilds the labels.
+	 */
+	TWO_HOP_LABELS
+}
@@ -0,0 +1,55 @@
+package Reacher;
+
+/**
+ * Counts of the {@link Graph#doesPathExist} probes a graph has answered, as returned by
+ * {@link Graph#getReachabilityFilterStats()}. Every negative answer was given either by the reachability filter, without
+ * reading the closure, or by the reachability index after the filter let the probe through.
+ */
+public final class ReachabilityFilterStats {
+
+	private final long probeCount;
+	private final long rejectionCount;
+	private final long indexNegativeCount;
+
+	public ReachabilityFilterStats(long probeCount, long rejectionCount, long indexNegativeCount) {
+		this.probeCount = probeCount;
+		this.rejectionCount = rejectionCount;
+		this.indexNegativeCount = indexNegativeCount;
+	}
+
+	public long probeCount() {
+		return probeCount;
+	}
+
+	/**
+	 * @return the number of probes the filter answered negatively
+	 */
+	public long rejectionCount() {
+		return rejectionCount;
+	}
+
+	/**
+	 * @return the number of probes the filter let through that the index answered negatively
+	 */
+	public long indexNegativeCount() {
+		return indexNegativeCount;
+	}
+
+	public long negativeCount() {
+		return rejectionCount + indexNegativeCount;
+	}
+
+	/**
+	 * @return the fraction of negative answers the filter gave, or 1.0 if there were none
+	 */
+	public double hitRate() {
+		long negatives = negativeCount();
+		return negatives == 0 ? 1.0 : (double) rejectionCount / negatives;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ReachabilityFilterStats{probeCount=%d, rejectionCount=%d, indexNegativeCount=%d}",
+				probeCount, rejectionCount, indexNegativeCount);
+	}
+}
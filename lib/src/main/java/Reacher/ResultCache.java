@@ -0,0 +1,118 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the descendant and ancestor lists of vertices, bounded by the total number of nodes in the cached lists and
+ * evicting the least recently used lists first.
+ *
+ * <p>Writers invalidate exactly the lists a mutation changes, before publishing the version that changes them. Readers
+ * run concurrently with writers on whichever version they read, so an entry remembers the id of the version it was
+ * computed from, and every vertex has a stamp with the id of the last version that changed its lists. An entry is only
+ * returned if it is at least as new as the stamp, and only to a reader whose version is, so a list a reader computed
+ * from an older version and stored after the writer invalidated it is never returned once the writer publishes.
+ * Stamps are kept in a fixed number of slots shared between vertices, so a change to one vertex can make the entries
+ * of another miss, but never return a stale list.
+ */
+final class ResultCache {
+
+	static final int DESCENDANTS = 0;
+	static final int ANCESTORS = 1;
+
+	private static final int STAMP_BITS = 16;
+
+	private final Cache<Long, Entry> cache;
+	private final AtomicLongArray stamps = new AtomicLongArray(1 << STAMP_BITS);
+	// the id of the last version that invalidated every list
+	private volatile long clearedAt;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maximumNodes the most nodes the cached lists may hold together
+	 */
+	ResultCache(long maximumNodes) {
+		cache = CacheBuilder.newBuilder()
+				.maximumWeight(maximumNodes)
+				.weigher((Long key, Entry entry) -> entry.nodes.size() + 1)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @return the cached list, or null if it is not cached or may be stale for the given version
+	 */
+	List<INode> get(int kind, int vertex, long versionId) {
+		long key = key(kind, vertex);
+		var entry = cache.getIfPresent(key);
+
+		long stamp = stamp(key);
+		if (entry == null || entry.versionId < stamp || versionId < stamp) {
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return entry.nodes;
+	}
+
+	void put(int kind, int vertex, long versionId, List<INode> nodes) {
+		long key = key(kind, vertex);
+
+		if (versionId >= stamp(key)) {
+			cache.put(key, new Entry(versionId, nodes));
+		}
+	}
+
+	/**
+	 * Called under the graph's write lock, before the version with the given id is published.
+	 */
+	void invalidate(int kind, int vertex, long versionId) {
+		long key = key(kind, vertex);
+
+		stamps.set(slot(key), versionId);
+		cache.invalidate(key);
+	}
+
+	void invalidateAll(long versionId) {
+		clearedAt = versionId;
+		cache.invalidateAll();
+	}
+
+	/**
+	 * @return hits, misses and evictions. Nothing is loaded through the cache, so the load counts are 0.
+	 */
+	CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, cache.stats().evictionCount());
+	}
+
+	private long stamp(long key) {
+		return Math.max(clearedAt, stamps.get(slot(key)));
+	}
+
+	private static long key(int kind, int vertex) {
+		return (long) vertex << 1 | kind;
+	}
+
+	private static int slot(long key) {
+		return (int) (key ^ key >>> STAMP_BITS) & ((1 << STAMP_BITS) - 1);
+	}
+
+	private static final class Entry {
+		private final long versionId;
+		private final List<INode> nodes;
+
+		private Entry(long versionId, List<INode> nodes) {
+			this.versionId = versionId;
+			this.nodes = nodes;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package Reacher.domain;
+
+import java.util.Objects;
+
+/**
+ * A single change to a graph, for applying several changes at once.
+ */
+public final class Mutation {
+
+	public enum Type {
+		ADD_NODE,
+		REMOVE_NODE,
+		ADD_EDGE,
+		REMOVE_EDGE
+	}
+
+	private final Type type;
+	private final INode node;
+	private final int fromNodeId;
+	private final int toNodeId;
+
+	private Mutation(Type type, INode node, int fromNodeId, int toNodeId) {
+		this.type = type;
+		this.node = node;
+		this.fromNodeId = fromNodeId;
+		this.toNodeId = toNodeId;
+	}
+
+	public static Mutation addNode(INode node) {
+		return new Mutation(Type.ADD_NODE, Objects.requireNonNull(node), node.getId(), node.getId());
+	}
+
+	public static Mutation removeNode(int nodeId) {
+		return new Mutation(Type.REMOVE_NODE, null, nodeId, nodeId);
+	}
+
+	public static Mutation addEdge(int fromNodeId, int toNodeId) {
+		return new Mutation(Type.ADD_EDGE, null, fromNodeId, toNodeId);
+	}
+
+	public static Mutation removeEdge(int fromNodeId, int toNodeId) {
+		return new Mutation(Type.REMOVE_EDGE, null, fromNodeId, toNodeId);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the node to add, or null unless this is an {@link Type#ADD_NODE} mutation
+	 */
+	public INode getNode() {
+		return node;
+	}
+
+	/**
+	 * @return the id of the node being added or removed, or the source of the edge
+	 */
+	public int getFromNodeId() {
+		return fromNodeId;
+	}
+
+	/**
+	 * @return the id of the node being added or removed, or the target of the edge
+	 */
+	public int getToNodeId() {
+		return toNodeId;
+	}
+
+	public boolean isEdgeMutation() {
+		return type == Type.ADD_EDGE || type == Type.REMOVE_EDGE;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		Mutation mutation = (Mutation) o;
+
+		return type == mutation.type && fromNodeId == mutation.fromNodeId && toNodeId == mutation.toNodeId;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(type, fromNodeId, toNodeId);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s(%d, %d)", type, fromNodeId, toNodeId);
+	}
+}
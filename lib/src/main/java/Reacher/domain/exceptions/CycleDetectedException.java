@@ -0,0 +1,24 @@
+package Reacher.domain.exceptions;
+
+/**
+ * Thrown when adding an edge would close a cycle, because its target already reaches its source.
+ */
+public class CycleDetectedException extends IllegalArgumentException {
+
+	private int fromNodeId;
+	private int toNodeId;
+
+	public CycleDetectedException(int fromNodeId, int toNodeId) {
+		super(String.format("Edge from %d to %d would create a cycle", fromNodeId, toNodeId));
+		this.fromNodeId = fromNodeId;
+		this.toNodeId = toNodeId;
+	}
+
+	public int getFromNodeId() {
+		return fromNodeId;
+	}
+
+	public int getToNodeId() {
+		return toNodeId;
+	}
+}
@@ -0,0 +1,238 @@
+package Reacher.index;
+
+import Reacher.utils.ChunkedArray;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed sparse row adjacency lists over vertex numbers. Vertices are split into fixed-size blocks, each with its
+ * own offset and target arrays, so an edge mutation only rewrites the arrays of one block. Neighbours are kept sorted.
+ * Blocks are immutable and shared between forks.
+ */
+public class AdjacencyArrays {
+
+	private static final int BLOCK_SHIFT = 8;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+	private static final int[] NO_TARGETS = new int[0];
+	private static final Block EMPTY_BLOCK = new Block(new int[BLOCK_SIZE + 1], NO_TARGETS);
+
+	private int numVertices;
+	private final ChunkedArray<Block> blocks;
+
+	private AdjacencyArrays(int numVertices, ChunkedArray<Block> blocks) {
+		this.numVertices = numVertices;
+		this.blocks = blocks;
+	}
+
+	/**
+	 * Builds the adjacency lists of the edges {@code sources[i] -> targets[i]}. Duplicate edges are stored once.
+	 * Building with the two arrays swapped gives the transpose.
+	 */
+	public static AdjacencyArrays fromEdges(int numVertices, int[] sources, int[] targets, int numEdges) {
+		int numBlocks = (numVertices + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+
+		// counting sort of the edges by source
+		int[] offsets = new int[numVertices + 1];
+		for (int e = 0; e < numEdges; e++) {
+			offsets[sources[e] + 1]++;
+		}
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		int[] sorted = new int[numEdges];
+		int[] next = Arrays.copyOf(offsets, numVertices);
+		for (int e = 0; e < numEdges; e++) {
+			sorted[next[sources[e]]++] = targets[e];
+		}
+
+		var blocks = new ChunkedArray<Block>(numBlocks);
+
+		for (int b = 0; b < numBlocks; b++) {
+			int first = b << BLOCK_SHIFT;
+			int last = Math.min(first + BLOCK_SIZE, numVertices);
+
+			int[] blockOffsets = new int[BLOCK_SIZE + 1];
+			int[] blockTargets = new int[offsets[last] - offsets[first]];
+			int size = 0;
+
+			for (int v = first; v < last; v++) {
+				int from = offsets[v];
+				int to = offsets[v + 1];
+
+				Arrays.sort(sorted, from, to);
+				for (int e = from; e < to; e++) {
+					if (e == from || sorted[e] != sorted[e - 1]) {
+						blockTargets[size++] = sorted[e];
+					}
+				}
+
+				blockOffsets[(v & BLOCK_MASK) + 1] = size;
+			}
+
+			for (int i = last - first; i < BLOCK_SIZE; i++) {
+				blockOffsets[i + 1] = size;
+			}
+
+			blocks.set(b, new Block(blockOffsets, size == blockTargets.length ? blockTargets : Arrays.copyOf(blockTargets, size)));
+		}
+
+		return new AdjacencyArrays(numVertices, blocks);
+	}
+
+	/**
+	 * @return a copy that can be mutated without affecting this instance
+	 */
+	public AdjacencyArrays fork() {
+		return new AdjacencyArrays(numVertices, blocks.fork());
+	}
+
+	public int numVertices() {
+		return numVertices;
+	}
+
+	/**
+	 * Adds vertices without neighbours up to the given number of vertices.
+	 */
+	public void grow(int newNumVertices) {
+		if (newNumVertices <= numVertices) {
+			return;
+		}
+
+		// the offsets of a block's unused vertices already point at the end of its targets, so only new blocks
+		// need to be added
+		int numBlocks = blocks.length();
+		blocks.grow((newNumVertices + BLOCK_SIZE - 1) >>> BLOCK_SHIFT);
+		for (int b = numBlocks; b < blocks.length(); b++) {
+			blocks.set(b, EMPTY_BLOCK);
+		}
+
+		numVertices = newNumVertices;
+	}
+
+	public int degree(int vertex) {
+		var block = blocks.get(vertex >>> BLOCK_SHIFT);
+		int i = vertex & BLOCK_MASK;
+
+		return block.offsets[i + 1] - block.offsets[i];
+	}
+
+	public boolean contains(int vertex, int neighbour) {
+		var block = blocks.get(vertex >>> BLOCK_SHIFT);
+		int i = vertex & BLOCK_MASK;
+
+		return Arrays.binarySearch(block.targets, block.offsets[i], block.offsets[i + 1], neighbour) >= 0;
+	}
+
+	public void forEachNeighbour(int vertex, IntConsumer consumer) {
+		var block = blocks.get(vertex >>> BLOCK_SHIFT);
+		int i = vertex & BLOCK_MASK;
+
+		for (int e = block.offsets[i]; e < block.offsets[i + 1]; e++) {
+			consumer.accept(block.targets[e]);
+		}
+	}
+
+	/**
+	 * @return a copy of the sorted neighbours of the vertex
+	 */
+	public int[] neighbours(int vertex) {
+		var block = blocks.get(vertex >>> BLOCK_SHIFT);
+		int i = vertex & BLOCK_MASK;
+
+		return Arrays.copyOfRange(block.targets, block.offsets[i], block.offsets[i + 1]);
+	}
+
+	/**
+	 * @return false if the edge was already present
+	 */
+	public boolean add(int vertex, int neighbour) {
+		int b = vertex >>> BLOCK_SHIFT;
+		var block = blocks.get(b);
+		int i = vertex & BLOCK_MASK;
+
+		int pos = Arrays.binarySearch(block.targets, block.offsets[i], block.offsets[i + 1], neighbour);
+		if (pos >= 0) {
+			return false;
+		}
+		pos = -pos - 1;
+
+		int[] targets = new int[block.targets.length + 1];
+		System.arraycopy(block.targets, 0, targets, 0, pos);
+		targets[pos] = neighbour;
+		System.arraycopy(block.targets, pos, targets, pos + 1, block.targets.length - pos);
+
+		int[] offsets = block.offsets.clone();
+		for (int j = i + 1; j <= BLOCK_SIZE; j++) {
+			offsets[j]++;
+		}
+
+		blocks.set(b, new Block(offsets, targets));
+		return true;
+	}
+
+	/**
+	 * @return false if the edge was not present
+	 */
+	public boolean remove(int vertex, int neighbour) {
+		int b = vertex >>> BLOCK_SHIFT;
+		var block = blocks.get(b);
+		int i = vertex & BLOCK_MASK;
+
+		int pos = Arrays.binarySearch(block.targets, block.offsets[i], block.offsets[i + 1], neighbour);
+		if (pos < 0) {
+			return false;
+		}
+
+		int[] targets = new int[block.targets.length - 1];
+		System.arraycopy(block.targets, 0, targets, 0, pos);
+		System.arraycopy(block.targets, pos + 1, targets, pos, block.targets.length - pos - 1);
+
+		int[] offsets = block.offsets.clone();
+		for (int j = i + 1; j <= BLOCK_SIZE; j++) {
+			offsets[j]--;
+		}
+
+		blocks.set(b, new Block(offsets, targets));
+		return true;
+	}
+
+	public void removeAll(int vertex) {
+		int b = vertex >>> BLOCK_SHIFT;
+		var block = blocks.get(b);
+		int i = vertex & BLOCK_MASK;
+
+		int start = block.offsets[i];
+		int degree = block.offsets[i + 1] - start;
+		if (degree == 0) {
+			return;
+		}
+
+		int[] targets = block.targets.length == degree ? NO_TARGETS : new int[block.targets.length - degree];
+		System.arraycopy(block.targets, 0, targets, 0, start);
+		System.arraycopy(block.targets, start + degree, targets, start, block.targets.length - start - degree);
+
+		int[] offsets = block.offsets.clone();
+		for (int j = i + 1; j <= BLOCK_SIZE; j++) {
+			offsets[j] -= degree;
+		}
+
+		blocks.set(b, new Block(offsets, targets));
+	}
+
+	/**
+	 * The adjacency lists of {@code BLOCK_SIZE} consecutive vertices. Blocks are never modified once built.
+	 */
+	private static final class Block {
+		private final int[] offsets;
+		private final int[] targets;
+
+		private Block(int[] offsets, int[] targets) {
+			this.offsets = offsets;
+			this.targets = targets;
+		}
+	}
+}
@@ -0,0 +1,400 @@
+package Reacher.index;
+
+import Reacher.utils.ChunkedArray;
+import Reacher.utils.GraphUtils;
+import org.roaringbitmap.BatchIterator;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.ImmutableBitmapDataProvider;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Stores the transitive closure as one compressed bitmap of descendants and one of ancestors per vertex. Rows are
+ * shared between forks and copied before a fork first modifies them. An index opened from a
+ * {@link ReachabilityIndexFile} reads rows in place from the mapped file until they are first modified.
+ */
+public class BitmapReachabilityIndex implements ReachabilityIndex {
+
+	private final Rows descendants;
+	private final Rows ancestors;
+
+	public BitmapReachabilityIndex(RoaringBitmap[] descendants, RoaringBitmap[] ancestors) {
+		this(new Rows(ChunkedArray.of(descendants), null), new Rows(ChunkedArray.of(ancestors), null));
+	}
+
+	private BitmapReachabilityIndex(Rows descendants, Rows ancestors) {
+		this.descendants = descendants;
+		this.ancestors = ancestors;
+	}
+
+	/**
+	 * @return an index over the rows of the file. Nothing is read until a row is queried.
+	 */
+	public static BitmapReachabilityIndex mapped(ReachabilityIndexFile file) {
+		int n = file.numVertices();
+
+		return new BitmapReachabilityIndex(
+				new Rows(new ChunkedArray<>(n), file::descendants),
+				new Rows(new ChunkedArray<>(n), file::ancestors));
+	}
+
+	@Override
+	public BitmapReachabilityIndex fork() {
+		return new BitmapReachabilityIndex(descendants.fork(), ancestors.fork());
+	}
+
+	@Override
+	public boolean reaches(int fromVertex, int toVertex) {
+		return descendants.get(fromVertex).contains(toVertex);
+	}
+
+	@Override
+	public void forEachDescendant(int vertex, IntConsumer consumer) {
+		descendants.get(vertex).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachAncestor(int vertex, IntConsumer consumer) {
+		ancestors.get(vertex).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	/**
+	 * Bitmaps keep the cardinality of each 2^16-wide container, so counting a row sums one int per container rather
+	 * than walking its bits.
+	 */
+	@Override
+	public int countDescendants(int vertex) {
+		return descendants.get(vertex).getCardinality();
+	}
+
+	@Override
+	public int countAncestors(int vertex) {
+		return ancestors.get(vertex).getCardinality();
+	}
+
+	@Override
+	public void forEachDescendantOfAny(int[] vertices, IntConsumer consumer) {
+		unionOfRows(descendants, vertices).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachAncestorOfAny(int[] vertices, IntConsumer consumer) {
+		unionOfRows(ancestors, vertices).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	private static RoaringBitmap unionOfRows(Rows rows, int[] vertices) {
+		var selected = new RoaringBitmap[vertices.length];
+
+		for (int i = 0; i < vertices.length; i++) {
+			selected[i] = rows.getOnHeap(vertices[i]);
+		}
+
+		return FastAggregation.or(selected);
+	}
+
+	@Override
+	public void forEachCommonDescendant(int vertexA, int vertexB, IntConsumer consumer) {
+		RoaringBitmap.and(descendants.getOnHeap(vertexA), descendants.getOnHeap(vertexB))
+				.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachVertexBetween(int fromVertex, int toVertex, IntConsumer consumer) {
+		RoaringBitmap.and(descendants.getOnHeap(fromVertex), ancestors.getOnHeap(toVertex))
+				.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	/**
+	 * The common ancestors are the AND of the two ancestor rows. They include every ancestor of each of them, so a
+	 * common ancestor that reaches another one has a child among them, and checking the children of each is enough to
+	 * find the lowest without reading any descendant rows.
+	 */
+	@Override
+	public void forEachLowestCommonAncestor(int vertexA, int vertexB, AdjacencyArrays children, IntConsumer consumer) {
+		var common = RoaringBitmap.and(ancestors.getOnHeap(vertexA), ancestors.getOnHeap(vertexB));
+
+		common.forEach((org.roaringbitmap.IntConsumer) vertex -> {
+			for (int child : children.neighbours(vertex)) {
+				if (common.contains(child)) {
+					return;
+				}
+			}
+			consumer.accept(vertex);
+		});
+	}
+
+	@Override
+	public VertexCursor descendantCursor(int vertex) {
+		return cursorOf(descendants.get(vertex));
+	}
+
+	@Override
+	public VertexCursor ancestorCursor(int vertex) {
+		return cursorOf(ancestors.get(vertex));
+	}
+
+	private static VertexCursor cursorOf(ImmutableBitmapDataProvider row) {
+		BatchIterator iterator = row.getBatchIterator();
+
+		return buffer -> iterator.hasNext() ? iterator.nextBatch(buffer) : 0;
+	}
+
+	/**
+	 * Only the pairs the edge makes reachable are written. An ancestor of {@code fromVertex} that already reaches
+	 * {@code toVertex} already reaches every descendant of it, and a descendant of {@code toVertex} that is already
+	 * reached from {@code fromVertex} is already reached from every ancestor of it, so both are pruned and only the
+	 * rows of the remaining vertices are ORed with the remaining vertices on the other side.
+	 */
+	@Override
+	public void addEdge(int fromVertex, int toVertex) {
+		if (reaches(fromVertex, toVertex)) {
+			return;
+		}
+
+		RoaringBitmap newAncestors = ancestors.copyOf(fromVertex);
+		newAncestors.add(fromVertex);
+		newAncestors.andNot(ancestors.getOnHeap(toVertex));
+
+		RoaringBitmap newDescendants = descendants.copyOf(toVertex);
+		newDescendants.add(toVertex);
+		newDescendants.andNot(descendants.getOnHeap(fromVertex));
+
+		newAncestors.forEach((int ancestor) -> descendants.getMutable(ancestor).or(newDescendants));
+		newDescendants.forEach((int descendant) -> ancestors.getMutable(descendant).or(newAncestors));
+	}
+
+	/**
+	 * Only the rows of {@code fromVertex} and its ancestors can lose descendants, and a row only changes if the row of
+	 * one of its children changed. Those rows are recomputed from the children in reverse topological order, stopping
+	 * at rows that come out unchanged, and every lost pair is then removed from the ancestor rows.
+	 */
+	@Override
+	public void removeEdge(int fromVertex, int toVertex, AdjacencyArrays children) {
+		RoaringBitmap candidates = ancestors.copyOf(fromVertex);
+		candidates.add(fromVertex);
+
+		recomputeDescendants(candidates, RoaringBitmap.bitmapOf(fromVertex), children);
+	}
+
+	/**
+	 * Recomputes the descendant rows of the candidates from their children's rows and removes every pair a row lost
+	 * from the ancestor rows. A candidate's row is only recomputed if it is one of {@code changedVertices} or one of
+	 * its children's rows changed.
+	 *
+	 * @param candidates the vertices whose rows may have changed, closed under taking ancestors
+	 */
+	private void recomputeDescendants(RoaringBitmap candidates, RoaringBitmap changedVertices, AdjacencyArrays children) {
+		// a vertex has strictly more descendants than any vertex it reaches, so sorting by the number of
+		// descendants gives a reverse topological order
+		long[] order = new long[candidates.getCardinality()];
+		int size = 0;
+		for (var it = candidates.getIntIterator(); it.hasNext(); ) {
+			int vertex = it.next();
+			order[size++] = ((long) descendants.get(vertex).getCardinality() << 32) | vertex;
+		}
+		Arrays.sort(order);
+
+		var changed = new RoaringBitmap();
+
+		for (long key : order) {
+			int vertex = (int) key;
+
+			if (!changedVertices.contains(vertex) && !hasChangedChild(children, vertex, changed)) {
+				continue;
+			}
+
+			RoaringBitmap oldRow = descendants.getOnHeap(vertex);
+			RoaringBitmap newRow = descendantsOfChildren(children, vertex);
+
+			if (newRow.getCardinality() == oldRow.getCardinality()) {
+				continue;
+			}
+
+			RoaringBitmap lost = RoaringBitmap.andNot(oldRow, newRow);
+			lost.forEach((int descendant) -> ancestors.getMutable(descendant).remove(vertex));
+
+			newRow.runOptimize();
+			descendants.set(vertex, newRow);
+			changed.add(vertex);
+		}
+	}
+
+	private static boolean hasChangedChild(AdjacencyArrays children, int vertex, RoaringBitmap changed) {
+		for (int child : children.neighbours(vertex)) {
+			if (changed.contains(child)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private RoaringBitmap descendantsOfChildren(AdjacencyArrays children, int vertex) {
+		int[] vertexChildren = children.neighbours(vertex);
+		var rows = new RoaringBitmap[vertexChildren.length + 1];
+
+		for (int i = 0; i < vertexChildren.length; i++) {
+			rows[i] = descendants.getOnHeap(vertexChildren[i]);
+		}
+		rows[vertexChildren.length] = RoaringBitmap.bitmapOf(vertexChildren);
+
+		return FastAggregation.or(rows);
+	}
+
+	@Override
+	public void addVertex(int vertex) {
+		descendants.grow(vertex + 1);
+		ancestors.grow(vertex + 1);
+
+		descendants.set(vertex, new RoaringBitmap());
+		ancestors.set(vertex, new RoaringBitmap());
+	}
+
+	/**
+	 * Replaces vertices that lie on one cycle, such as the components an edge closes a cycle through, with one of
+	 * them. That vertex inherits every ancestor and descendant of the others, every ancestor of it now reaches every
+	 * descendant of it, and rows that named one of the vertices name it instead. The other vertices are left without
+	 * rows.
+	 *
+	 * @param vertices the vertices to contract, which must include {@code into}
+	 */
+	public void contract(RoaringBitmap vertices, int into) {
+		var descendantRows = new ArrayList<RoaringBitmap>();
+		var ancestorRows = new ArrayList<RoaringBitmap>();
+		vertices.forEach((int vertex) -> {
+			descendantRows.add(descendants.getOnHeap(vertex));
+			ancestorRows.add(ancestors.getOnHeap(vertex));
+		});
+
+		RoaringBitmap newDescendants = FastAggregation.or(descendantRows.iterator());
+		newDescendants.andNot(vertices);
+		RoaringBitmap newAncestors = FastAggregation.or(ancestorRows.iterator());
+		newAncestors.andNot(vertices);
+
+		newAncestors.forEach((int ancestor) -> {
+			var row = descendants.getMutable(ancestor);
+			row.andNot(vertices);
+			row.add(into);
+			row.or(newDescendants);
+		});
+		newDescendants.forEach((int descendant) -> {
+			var row = ancestors.getMutable(descendant);
+			row.andNot(vertices);
+			row.add(into);
+			row.or(newAncestors);
+		});
+
+		vertices.forEach((int vertex) -> {
+			descendants.set(vertex, new RoaringBitmap());
+			ancestors.set(vertex, new RoaringBitmap());
+		});
+		descendants.set(into, newDescendants);
+		ancestors.set(into, newAncestors);
+	}
+
+	/**
+	 * Every ancestor of the vertex loses at least the vertex, and may lose descendants it only reached through it, so
+	 * their rows are recomputed as if the vertex's edges had been removed one by one.
+	 */
+	@Override
+	public void removeVertex(int vertex, AdjacencyArrays children) {
+		RoaringBitmap formerAncestors = ancestors.copyOf(vertex);
+
+		descendants.get(vertex).forEach((int descendant) -> ancestors.getMutable(descendant).remove(vertex));
+		ancestors.set(vertex, new RoaringBitmap());
+
+		recomputeDescendants(formerAncestors, formerAncestors, children);
+		descendants.set(vertex, new RoaringBitmap());
+	}
+
+	@Override
+	public ReachabilityIndex rebuild(AdjacencyArrays children, AdjacencyArrays parents) {
+		return GraphUtils.constructReachabilityIndex(children, parents);
+	}
+
+	@Override
+	public long numPairs() {
+		long pairs = 0;
+		for (int vertex = 0; vertex < descendants.length(); vertex++) {
+			pairs += descendants.get(vertex).getLongCardinality();
+		}
+
+		return pairs;
+	}
+
+	@Override
+	public long sizeInBytes() {
+		long bytes = 0;
+		for (int vertex = 0; vertex < descendants.length(); vertex++) {
+			bytes += descendants.get(vertex).getLongSizeInBytes() + ancestors.get(vertex).getLongSizeInBytes();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * One side of the closure. A row is null until it is first written if the index was opened from a file, and is
+	 * read from the file until then.
+	 */
+	private static final class Rows {
+		private final ChunkedArray<RoaringBitmap> rows;
+		private final IntFunction<ImmutableRoaringBitmap> mappedRows;
+		// rows this instance has copied, which no other fork can see
+		private final RoaringBitmap ownedRows;
+
+		private Rows(ChunkedArray<RoaringBitmap> rows, IntFunction<ImmutableRoaringBitmap> mappedRows) {
+			this.rows = rows;
+			this.mappedRows = mappedRows;
+			this.ownedRows = new RoaringBitmap();
+		}
+
+		private Rows fork() {
+			ownedRows.clear();
+			return new Rows(rows.fork(), mappedRows);
+		}
+
+		private ImmutableBitmapDataProvider get(int vertex) {
+			RoaringBitmap row = rows.get(vertex);
+			return row != null ? row : mappedRows.apply(vertex);
+		}
+
+		/**
+		 * @return the row as a heap bitmap, which must not be modified
+		 */
+		private RoaringBitmap getOnHeap(int vertex) {
+			RoaringBitmap row = rows.get(vertex);
+			return row != null ? row : mappedRows.apply(vertex).toRoaringBitmap();
+		}
+
+		private RoaringBitmap copyOf(int vertex) {
+			RoaringBitmap row = rows.get(vertex);
+			return row != null ? row.clone() : mappedRows.apply(vertex).toRoaringBitmap();
+		}
+
+		private RoaringBitmap getMutable(int vertex) {
+			if (ownedRows.checkedAdd(vertex)) {
+				rows.set(vertex, copyOf(vertex));
+			}
+
+			return rows.get(vertex);
+		}
+
+		private void set(int vertex, RoaringBitmap row) {
+			rows.set(vertex, row);
+			ownedRows.add(vertex);
+		}
+
+		private void grow(int length) {
+			rows.grow(length);
+		}
+
+		private int length() {
+			return rows.length();
+		}
+	}
+}
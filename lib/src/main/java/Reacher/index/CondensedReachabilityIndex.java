@@ -0,0 +1,435 @@
+package Reacher.index;
+
+import Reacher.utils.ChunkedArray;
+import Reacher.utils.GraphUtils;
+import Reacher.utils.IntChunkedArray;
+import Reacher.utils.IntStack;
+import org.roaringbitmap.BatchIterator;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.function.IntConsumer;
+
+/**
+ * Answers reachability queries on a graph that may contain cycles. Every strongly connected component is condensed
+ * into one vertex of a DAG, named after one of its members, and a {@link BitmapReachabilityIndex} holds the closure of
+ * that DAG, so a component of k vertices costs one row rather than k. A vertex reaches the other members of its
+ * component and every member of the components its component reaches, and never reaches itself.
+ *
+ * <p>An edge inside a component changes nothing. An edge between components that closes a cycle contracts every
+ * component on the cycle into one, and removing an edge between components only changes the condensation if it was
+ * the last edge between them. Removing an edge or a vertex that splits a component rebuilds the condensation.
+ */
+public class CondensedReachabilityIndex implements ReachabilityIndex {
+
+	// vertex number to the vertex number naming its component
+	private IntChunkedArray componentOf;
+	// component to its members, null for vertices that do not name a component. Sets are replaced, never modified.
+	private ChunkedArray<RoaringBitmap> members;
+	private AdjacencyArrays componentChildren;
+	private AdjacencyArrays componentParents;
+	private BitmapReachabilityIndex components;
+
+	private CondensedReachabilityIndex(
+			IntChunkedArray componentOf,
+			ChunkedArray<RoaringBitmap> members,
+			AdjacencyArrays componentChildren,
+			AdjacencyArrays componentParents,
+			BitmapReachabilityIndex components) {
+		this.componentOf = componentOf;
+		this.members = members;
+		this.componentChildren = componentChildren;
+		this.componentParents = componentParents;
+		this.components = components;
+	}
+
+	public static CondensedReachabilityIndex build(AdjacencyArrays children) {
+		return build(children, 1);
+	}
+
+	/**
+	 * @param parallelism the number of threads that compute the closure of the condensation, see
+	 *     {@link GraphUtils#constructReachabilityIndex(AdjacencyArrays, AdjacencyArrays, int)}
+	 */
+	public static CondensedReachabilityIndex build(AdjacencyArrays children, int parallelism) {
+		int n = children.numVertices();
+		int[] componentOf = GraphUtils.stronglyConnectedComponents(children);
+
+		var members = new RoaringBitmap[n];
+		int numEdges = 0;
+		for (int vertex = 0; vertex < n; vertex++) {
+			int component = componentOf[vertex];
+			if (members[component] == null) {
+				members[component] = new RoaringBitmap();
+			}
+			members[component].add(vertex);
+			numEdges += children.degree(vertex);
+		}
+
+		int[] sources = new int[numEdges];
+		int[] targets = new int[numEdges];
+		int[] size = new int[1];
+		for (int vertex = 0; vertex < n; vertex++) {
+			int component = componentOf[vertex];
+
+			children.forEachNeighbour(vertex, child -> {
+				if (componentOf[child] != component) {
+					sources[size[0]] = component;
+					targets[size[0]++] = componentOf[child];
+				}
+			});
+		}
+
+		var componentChildren = AdjacencyArrays.fromEdges(n, sources, targets, size[0]);
+		var componentParents = AdjacencyArrays.fromEdges(n, targets, sources, size[0]);
+
+		return new CondensedReachabilityIndex(
+				IntChunkedArray.of(componentOf),
+				ChunkedArray.of(members),
+				componentChildren,
+				componentParents,
+				GraphUtils.constructReachabilityIndex(componentChildren, componentParents, parallelism));
+	}
+
+	@Override
+	public CondensedReachabilityIndex fork() {
+		return new CondensedReachabilityIndex(
+				componentOf.fork(), members.fork(), componentChildren.fork(), componentParents.fork(), components.fork());
+	}
+
+	/**
+	 * @return the vertex number naming the vertex's strongly connected component
+	 */
+	public int componentOf(int vertex) {
+		return componentOf.get(vertex);
+	}
+
+	@Override
+	public boolean reaches(int fromVertex, int toVertex) {
+		if (fromVertex == toVertex) {
+			return false;
+		}
+
+		int fromComponent = componentOf.get(fromVertex);
+		int toComponent = componentOf.get(toVertex);
+
+		return fromComponent == toComponent || components.reaches(fromComponent, toComponent);
+	}
+
+	@Override
+	public void forEachDescendant(int vertex, IntConsumer consumer) {
+		descendantsOf(vertex).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachAncestor(int vertex, IntConsumer consumer) {
+		ancestorsOf(vertex).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	private RoaringBitmap descendantsOf(int vertex) {
+		int component = componentOf.get(vertex);
+		var rows = new ArrayList<RoaringBitmap>();
+
+		rows.add(members.get(component));
+		components.forEachDescendant(component, descendant -> rows.add(members.get(descendant)));
+
+		RoaringBitmap descendants = FastAggregation.or(rows.iterator());
+		descendants.remove(vertex);
+		return descendants;
+	}
+
+	private RoaringBitmap ancestorsOf(int vertex) {
+		int component = componentOf.get(vertex);
+		var rows = new ArrayList<RoaringBitmap>();
+
+		rows.add(members.get(component));
+		components.forEachAncestor(component, ancestor -> rows.add(members.get(ancestor)));
+
+		RoaringBitmap ancestors = FastAggregation.or(rows.iterator());
+		ancestors.remove(vertex);
+		return ancestors;
+	}
+
+	@Override
+	public int countDescendants(int vertex) {
+		int component = componentOf.get(vertex);
+		int[] count = {members.get(component).getCardinality() - 1};
+
+		components.forEachDescendant(component, descendant -> count[0] += members.get(descendant).getCardinality());
+		return count[0];
+	}
+
+	@Override
+	public int countAncestors(int vertex) {
+		int component = componentOf.get(vertex);
+		int[] count = {members.get(component).getCardinality() - 1};
+
+		components.forEachAncestor(component, ancestor -> count[0] += members.get(ancestor).getCardinality());
+		return count[0];
+	}
+
+	@Override
+	public void forEachDescendantOfAny(int[] vertices, IntConsumer consumer) {
+		var rows = new RoaringBitmap[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			rows[i] = descendantsOf(vertices[i]);
+		}
+
+		FastAggregation.or(rows).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachAncestorOfAny(int[] vertices, IntConsumer consumer) {
+		var rows = new RoaringBitmap[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			rows[i] = ancestorsOf(vertices[i]);
+		}
+
+		FastAggregation.or(rows).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachCommonDescendant(int vertexA, int vertexB, IntConsumer consumer) {
+		RoaringBitmap.and(descendantsOf(vertexA), descendantsOf(vertexB))
+				.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachVertexBetween(int fromVertex, int toVertex, IntConsumer consumer) {
+		RoaringBitmap.and(descendantsOf(fromVertex), ancestorsOf(toVertex))
+				.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	/**
+	 * As in a DAG, a common ancestor that reaches a common ancestor outside its own component has a child outside its
+	 * component among them, so the lowest are found by checking the children of each.
+	 */
+	@Override
+	public void forEachLowestCommonAncestor(int vertexA, int vertexB, AdjacencyArrays children, IntConsumer consumer) {
+		var common = RoaringBitmap.and(ancestorsOf(vertexA), ancestorsOf(vertexB));
+
+		common.forEach((org.roaringbitmap.IntConsumer) vertex -> {
+			int component = componentOf.get(vertex);
+
+			for (int child : children.neighbours(vertex)) {
+				if (componentOf.get(child) != component && common.contains(child)) {
+					return;
+				}
+			}
+			consumer.accept(vertex);
+		});
+	}
+
+	@Override
+	public VertexCursor descendantCursor(int vertex) {
+		return cursorOf(descendantsOf(vertex));
+	}
+
+	@Override
+	public VertexCursor ancestorCursor(int vertex) {
+		return cursorOf(ancestorsOf(vertex));
+	}
+
+	private static VertexCursor cursorOf(RoaringBitmap vertices) {
+		BatchIterator iterator = vertices.getBatchIterator();
+
+		return buffer -> iterator.hasNext() ? iterator.nextBatch(buffer) : 0;
+	}
+
+	@Override
+	public void addEdge(int fromVertex, int toVertex) {
+		int fromComponent = componentOf.get(fromVertex);
+		int toComponent = componentOf.get(toVertex);
+
+		if (fromComponent == toComponent) {
+			return;
+		}
+
+		if (!components.reaches(toComponent, fromComponent)) {
+			if (componentChildren.add(fromComponent, toComponent)) {
+				componentParents.add(toComponent, fromComponent);
+				components.addEdge(fromComponent, toComponent);
+			}
+			return;
+		}
+
+		// the edge closes a cycle through every component between the two
+		var cycle = new RoaringBitmap();
+		cycle.add(fromComponent);
+		cycle.add(toComponent);
+		components.forEachDescendant(toComponent, component -> {
+			if (components.reaches(component, fromComponent)) {
+				cycle.add(component);
+			}
+		});
+
+		contract(cycle, fromComponent);
+	}
+
+	/**
+	 * Merges the components into one named {@code into}, moving their members and their edges to and from other
+	 * components over to it.
+	 */
+	private void contract(RoaringBitmap cycle, int into) {
+		var rows = new ArrayList<RoaringBitmap>();
+		cycle.forEach((int component) -> rows.add(members.get(component)));
+		RoaringBitmap merged = FastAggregation.or(rows.iterator());
+
+		cycle.forEach((int component) -> {
+			if (component == into) {
+				return;
+			}
+
+			members.get(component).forEach((int member) -> componentOf.set(member, into));
+			members.set(component, null);
+
+			for (int child : componentChildren.neighbours(component)) {
+				componentParents.remove(child, component);
+				if (!cycle.contains(child)) {
+					componentChildren.add(into, child);
+					componentParents.add(child, into);
+				}
+			}
+			for (int parent : componentParents.neighbours(component)) {
+				componentChildren.remove(parent, component);
+				if (!cycle.contains(parent)) {
+					componentParents.add(into, parent);
+					componentChildren.add(parent, into);
+				}
+			}
+			componentChildren.removeAll(component);
+			componentParents.removeAll(component);
+		});
+		members.set(into, merged);
+
+		components.contract(cycle, into);
+	}
+
+	/**
+	 * An edge inside a component only splits it if its source no longer reaches its target through the rest of the
+	 * component, which is checked by a search confined to the component.
+	 */
+	@Override
+	public void removeEdge(int fromVertex, int toVertex, AdjacencyArrays children) {
+		int fromComponent = componentOf.get(fromVertex);
+		int toComponent = componentOf.get(toVertex);
+
+		if (fromComponent == toComponent) {
+			if (!reachesWithinComponent(fromVertex, toVertex, children)) {
+				rebuild(children);
+			}
+			return;
+		}
+
+		var fromMembers = members.get(fromComponent);
+		for (var it = fromMembers.getIntIterator(); it.hasNext(); ) {
+			for (int child : children.neighbours(it.next())) {
+				if (componentOf.get(child) == toComponent) {
+					return;
+				}
+			}
+		}
+
+		componentChildren.remove(fromComponent, toComponent);
+		componentParents.remove(toComponent, fromComponent);
+		components.removeEdge(fromComponent, toComponent, componentChildren);
+	}
+
+	private boolean reachesWithinComponent(int fromVertex, int toVertex, AdjacencyArrays children) {
+		int component = componentOf.get(fromVertex);
+		var visited = new RoaringBitmap();
+		var stack = new IntStack();
+
+		visited.add(fromVertex);
+		stack.push(fromVertex);
+
+		while (!stack.isEmpty()) {
+			for (int child : children.neighbours(stack.pop())) {
+				if (child == toVertex) {
+					return true;
+				}
+				if (componentOf.get(child) == component && visited.checkedAdd(child)) {
+					stack.push(child);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void addVertex(int vertex) {
+		componentOf.grow(vertex + 1);
+		members.grow(vertex + 1);
+		componentChildren.grow(vertex + 1);
+		componentParents.grow(vertex + 1);
+
+		componentOf.set(vertex, vertex);
+		members.set(vertex, RoaringBitmap.bitmapOf(vertex));
+		components.addVertex(vertex);
+	}
+
+	@Override
+	public void removeVertex(int vertex, AdjacencyArrays children) {
+		int component = componentOf.get(vertex);
+
+		if (members.get(component).getCardinality() > 1) {
+			rebuild(children);
+			return;
+		}
+
+		componentParents.forEachNeighbour(component, parent -> componentChildren.remove(parent, component));
+		componentChildren.forEachNeighbour(component, child -> componentParents.remove(child, component));
+		componentChildren.removeAll(component);
+		componentParents.removeAll(component);
+		components.removeVertex(component, componentChildren);
+	}
+
+	private void rebuild(AdjacencyArrays children) {
+		var rebuilt = build(children);
+
+		componentOf = rebuilt.componentOf;
+		members = rebuilt.members;
+		componentChildren = rebuilt.componentChildren;
+		componentParents = rebuilt.componentParents;
+		components = rebuilt.components;
+	}
+
+	@Override
+	public ReachabilityIndex rebuild(AdjacencyArrays children, AdjacencyArrays parents) {
+		return build(children);
+	}
+
+	@Override
+	public long numPairs() {
+		long pairs = 0;
+
+		for (int component = 0; component < members.length(); component++) {
+			var componentMembers = members.get(component);
+			if (componentMembers == null) {
+				continue;
+			}
+
+			long[] reached = {componentMembers.getCardinality() - 1};
+			components.forEachDescendant(component, descendant -> reached[0] += members.get(descendant).getCardinality());
+			pairs += componentMembers.getCardinality() * reached[0];
+		}
+
+		return pairs;
+	}
+
+	@Override
+	public long sizeInBytes() {
+		long bytes = components.sizeInBytes() + (long) Integer.BYTES * componentOf.length();
+
+		for (int component = 0; component < members.length(); component++) {
+			var componentMembers = members.get(component);
+			if (componentMembers != null) {
+				bytes += componentMembers.getLongSizeInBytes();
+			}
+		}
+
+		return bytes;
+	}
+}
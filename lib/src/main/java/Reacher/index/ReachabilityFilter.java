@@ -0,0 +1,106 @@
+package Reacher.index;
+
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * Two topological orders of the vertices, used both to reject edges that would close a cycle and to answer most
+ * negative reachability queries without reading the closure. A vertex comes before everything it reaches in both
+ * orders, so if a vertex comes after another in either order it cannot reach it. The second order is chosen to
+ * disagree with the first as much as possible, as in FELINE: among the vertices whose parents have all been placed,
+ * it always places the one that comes last in the first order, so unrelated vertices tend to be ordered differently.
+ *
+ * <p>Both orders are kept valid as edges are added, and removing edges never invalidates them, so the filter never
+ * needs rebuilding.
+ */
+public class ReachabilityFilter {
+
+	private final TopologicalOrder order;
+	private final TopologicalOrder secondOrder;
+
+	private ReachabilityFilter(TopologicalOrder order, TopologicalOrder secondOrder) {
+		this.order = order;
+		this.secondOrder = secondOrder;
+	}
+
+	/**
+	 * @param order every vertex number, in topological order
+	 */
+	public static ReachabilityFilter of(int[] order, AdjacencyArrays children, AdjacencyArrays parents) {
+		int n = order.length;
+		int[] position = new int[n];
+		for (int i = 0; i < n; i++) {
+			position[order[i]] = i;
+		}
+
+		int[] inDegree = new int[n];
+		var ready = new RoaringBitmap();
+		for (int v = 0; v < n; v++) {
+			inDegree[v] = parents.degree(v);
+			if (inDegree[v] == 0) {
+				ready.add(position[v]);
+			}
+		}
+
+		int[] secondOrder = new int[n];
+		for (int i = 0; i < n; i++) {
+			int last = ready.last();
+			ready.remove(last);
+
+			int v = order[last];
+			secondOrder[i] = v;
+			children.forEachNeighbour(v, child -> {
+				if (--inDegree[child] == 0) {
+					ready.add(position[child]);
+				}
+			});
+		}
+
+		return new ReachabilityFilter(TopologicalOrder.of(order), TopologicalOrder.of(secondOrder));
+	}
+
+	/**
+	 * @return a copy that shares storage with this filter but can be mutated without affecting it
+	 */
+	public ReachabilityFilter fork() {
+		return new ReachabilityFilter(order.fork(), secondOrder.fork());
+	}
+
+	/**
+	 * @return the first order, which is the one {@link Reacher.Graph#topologicalOrder()} returns
+	 */
+	public TopologicalOrder topologicalOrder() {
+		return order;
+	}
+
+	/**
+	 * @return false only if {@code fromVertex} certainly does not reach {@code toVertex}
+	 */
+	public boolean mayReach(int fromVertex, int toVertex) {
+		return order.position(fromVertex) < order.position(toVertex)
+				&& secondOrder.position(fromVertex) < secondOrder.position(toVertex);
+	}
+
+	/**
+	 * Places a new vertex number, one past the last, at the end of both orders.
+	 */
+	public void append(int vertex) {
+		order.append(vertex);
+		secondOrder.append(vertex);
+	}
+
+	/**
+	 * Reorders both orders so that {@code from} comes before {@code to}. Call before adding the edge to the adjacency
+	 * arrays.
+	 *
+	 * @return false, leaving both orders unchanged, if {@code to} already reaches {@code from}
+	 */
+	public boolean addEdge(int from, int to, AdjacencyArrays children, AdjacencyArrays parents) {
+		if (!order.addEdge(from, to, children, parents)) {
+			return false;
+		}
+
+		// the second order is a valid order of the same acyclic graph, so it accepts the edge too
+		secondOrder.addEdge(from, to, children, parents);
+		return true;
+	}
+}
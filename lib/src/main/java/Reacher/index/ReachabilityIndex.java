@@ -0,0 +1,100 @@
+package Reacher.index;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Answers reachability queries between vertex numbers. A vertex never reaches itself.
+ *
+ * <p>Mutations only ever change the instance they are called on. Call {@link #fork()} to get a copy to mutate while
+ * other threads keep reading the original.
+ */
+public interface ReachabilityIndex {
+
+	/**
+	 * @return a copy that shares storage with this index but can be mutated without affecting it
+	 */
+	ReachabilityIndex fork();
+
+	boolean reaches(int fromVertex, int toVertex);
+	void forEachDescendant(int vertex, IntConsumer consumer);
+	void forEachAncestor(int vertex, IntConsumer consumer);
+
+	int countDescendants(int vertex);
+	int countAncestors(int vertex);
+
+	/**
+	 * Passes every vertex that is a descendant of at least one of the given vertices to the consumer, in ascending
+	 * order and once each.
+	 */
+	void forEachDescendantOfAny(int[] vertices, IntConsumer consumer);
+
+	/**
+	 * Passes every vertex that is an ancestor of at least one of the given vertices to the consumer, in ascending
+	 * order and once each.
+	 */
+	void forEachAncestorOfAny(int[] vertices, IntConsumer consumer);
+
+	/**
+	 * Passes every vertex that is a descendant of both vertices to the consumer, in ascending order.
+	 */
+	void forEachCommonDescendant(int vertexA, int vertexB, IntConsumer consumer);
+
+	/**
+	 * Passes every vertex that is a descendant of {@code fromVertex} and an ancestor of {@code toVertex}, the vertices
+	 * strictly inside the paths between them, to the consumer in ascending order.
+	 */
+	void forEachVertexBetween(int fromVertex, int toVertex, IntConsumer consumer);
+
+	/**
+	 * Passes every vertex that is an ancestor of both vertices but does not reach another such vertex to the
+	 * consumer, in ascending order.
+	 *
+	 * @param children the adjacency lists the index was built from
+	 */
+	void forEachLowestCommonAncestor(int vertexA, int vertexB, AdjacencyArrays children, IntConsumer consumer);
+
+	/**
+	 * @return a cursor over the descendants of the vertex. The index must not be mutated while it is in use.
+	 */
+	VertexCursor descendantCursor(int vertex);
+
+	/**
+	 * @return a cursor over the ancestors of the vertex. The index must not be mutated while it is in use.
+	 */
+	VertexCursor ancestorCursor(int vertex);
+
+	void addEdge(int fromVertex, int toVertex);
+
+	/**
+	 * Removes the pairs that were only reachable through the edge.
+	 *
+	 * @param children the adjacency lists after the edge has been removed from them
+	 */
+	void removeEdge(int fromVertex, int toVertex, AdjacencyArrays children);
+
+	/**
+	 * Gives the vertex empty rows, growing the index if the vertex is past its end.
+	 */
+	void addVertex(int vertex);
+
+	/**
+	 * @param children the adjacency lists after the vertex's edges have been removed from them
+	 */
+	void removeVertex(int vertex, AdjacencyArrays children);
+
+	/**
+	 * @return a new index of the same kind built from scratch, for when a batch of mutations is cheaper to apply by
+	 *     rebuilding than one by one
+	 */
+	ReachabilityIndex rebuild(AdjacencyArrays children, AdjacencyArrays parents);
+
+	/**
+	 * @return the number of (ancestor, descendant) pairs, the non-zeros of the reachability matrix
+	 */
+	long numPairs();
+
+	/**
+	 * @return the size of the stored rows in bytes, on the heap or mapped
+	 */
+	long sizeInBytes();
+}
@@ -0,0 +1,191 @@
+package Reacher.index;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * The descendant and ancestor rows of a reachability index, memory-mapped from a file or from a section of one. Rows
+ * are read in place as {@link ImmutableRoaringBitmap}s, so opening a file only maps it and the operating system pages
+ * rows in as they are queried. The rows stay off the Java heap.
+ *
+ * <p>An index starts with a header of four ints: a magic number, the format version, the number of vertices and a
+ * reserved int. It is followed by {@code 2 * numVertices + 1} row offsets, relative to the end of the offset table:
+ * descendant rows first, then ancestor rows. The rows follow in the portable RoaringBitmap format. A row never spans
+ * two {@link #REGION_SIZE} regions, so each region can be mapped with one buffer.
+ */
+public class ReachabilityIndexFile {
+
+	private static final int MAGIC = 0x52434849;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	private static final int REGION_SHIFT = 30;
+	private static final long REGION_SIZE = 1L << REGION_SHIFT;
+	private static final long REGION_MASK = REGION_SIZE - 1;
+
+	private final int numVertices;
+	private final LongBuffer offsets;
+	private final MappedByteBuffer[] regions;
+
+	private ReachabilityIndexFile(int numVertices, LongBuffer offsets, MappedByteBuffer[] regions) {
+		this.numVertices = numVertices;
+		this.offsets = offsets;
+		this.regions = regions;
+	}
+
+	public static ReachabilityIndexFile open(Path file) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return open(channel, 0);
+		}
+	}
+
+	/**
+	 * Maps an index written at the given position of the channel. The mappings stay valid after the channel is
+	 * closed.
+	 */
+	public static ReachabilityIndexFile open(FileChannel channel, long position) throws IOException {
+		if (channel.size() - position < HEADER_SIZE) {
+			throw new IOException("Not a reachability index");
+		}
+
+		var header = channel.map(FileChannel.MapMode.READ_ONLY, position, HEADER_SIZE);
+
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a reachability index");
+		}
+		int formatVersion = header.getInt();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException(String.format("Unsupported reachability index format version: %d", formatVersion));
+		}
+		int numVertices = header.getInt();
+
+		long offsetTableSize = offsetTableSize(numVertices);
+		var offsets = channel.map(FileChannel.MapMode.READ_ONLY, position + HEADER_SIZE, offsetTableSize).asLongBuffer();
+
+		long dataStart = position + HEADER_SIZE + offsetTableSize;
+		long dataSize = offsets.get(2 * numVertices);
+		var regions = new MappedByteBuffer[(int) ((dataSize + REGION_SIZE - 1) >>> REGION_SHIFT)];
+
+		for (int r = 0; r < regions.length; r++) {
+			long start = (long) r << REGION_SHIFT;
+			regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + start, Math.min(REGION_SIZE, dataSize - start));
+		}
+
+		return new ReachabilityIndexFile(numVertices, offsets, regions);
+	}
+
+	/**
+	 * Writes the rows of the given vertices, renumbering vertex {@code vertices[i]} to {@code i}.
+	 *
+	 * @param numVertices one more than the largest vertex number in the index
+	 */
+	public static void write(Path file, ReachabilityIndex index, int numVertices, int[] vertices) throws IOException {
+		try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(channel, 0, index, numVertices, vertices);
+		}
+	}
+
+	/**
+	 * Writes the index at the given position of the channel, renumbering vertex {@code vertices[i]} to {@code i}.
+	 *
+	 * @return the position after the index
+	 */
+	public static long write(FileChannel channel, long start, ReachabilityIndex index, int numVertices, int[] vertices) throws IOException {
+		int[] renumbered = new int[numVertices];
+		for (int i = 0; i < vertices.length; i++) {
+			renumbered[vertices[i]] = i;
+		}
+
+		long offsetTableSize = offsetTableSize(vertices.length);
+		long[] offsets = new long[2 * vertices.length + 1];
+
+		channel.position(start + HEADER_SIZE + offsetTableSize);
+		var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+		long position = 0;
+		for (int row = 0; row < 2 * vertices.length; row++) {
+			int vertex = vertices[row % vertices.length];
+			var bitmap = new RoaringBitmap();
+			IntConsumer add = other -> bitmap.add(renumbered[other]);
+
+			if (row < vertices.length) {
+				index.forEachDescendant(vertex, add);
+			} else {
+				index.forEachAncestor(vertex, add);
+			}
+			bitmap.runOptimize();
+
+			int size = bitmap.serializedSizeInBytes();
+			if ((position & REGION_MASK) + size > REGION_SIZE) {
+				long padding = REGION_SIZE - (position & REGION_MASK);
+				out.write(new byte[(int) padding]);
+				position += padding;
+			}
+
+			offsets[row] = position;
+			bitmap.serialize(out);
+			position += size;
+		}
+		offsets[2 * vertices.length] = position;
+		out.flush();
+
+		channel.position(start);
+		var header = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+		header.writeInt(MAGIC);
+		header.writeInt(FORMAT_VERSION);
+		header.writeInt(vertices.length);
+		header.writeInt(0);
+		for (long offset : offsets) {
+			header.writeLong(offset);
+		}
+		header.flush();
+
+		return start + HEADER_SIZE + offsetTableSize + position;
+	}
+
+	private static long offsetTableSize(int numVertices) {
+		long size = 8L * (2L * numVertices + 1);
+
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(String.format("Too many vertices for one offset table: %d", numVertices));
+		}
+
+		return size;
+	}
+
+	public int numVertices() {
+		return numVertices;
+	}
+
+	public ImmutableRoaringBitmap descendants(int vertex) {
+		return row(vertex);
+	}
+
+	public ImmutableRoaringBitmap ancestors(int vertex) {
+		return row(numVertices + vertex);
+	}
+
+	private ImmutableRoaringBitmap row(int row) {
+		long start = offsets.get(row);
+		int size = (int) (offsets.get(row + 1) - start);
+
+		// padding before the next row is harmless, the bitmap only reads its own bytes
+		ByteBuffer buffer = regions[(int) (start >>> REGION_SHIFT)].duplicate();
+		int position = (int) (start & REGION_MASK);
+		buffer.position(position).limit(Math.min(buffer.capacity(), position + size));
+
+		return new ImmutableRoaringBitmap(buffer.slice());
+	}
+}
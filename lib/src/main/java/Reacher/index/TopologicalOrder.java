@@ -0,0 +1,159 @@
+package Reacher.index;
+
+import Reacher.utils.IntChunkedArray;
+import Reacher.utils.IntStack;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+
+/**
+ * A topological order of the vertices that is kept valid as edges are added, with the online algorithm of Pearce and
+ * Kelly. An edge from an earlier to a later vertex is accepted without any search. Otherwise only the vertices whose
+ * positions lie between the edge's endpoints are searched: the descendants of the target that come before the source
+ * and the ancestors of the source that come after the target. If the source is among the former the edge would close
+ * a cycle; if not, the two sets are moved, ancestors first, into the positions they occupied between them.
+ *
+ * <p>Removing edges never invalidates the order. Vertices of removed nodes keep their positions.
+ */
+public class TopologicalOrder {
+
+	// vertex number to position, and position to vertex number
+	private final IntChunkedArray positions;
+	private final IntChunkedArray vertices;
+
+	private TopologicalOrder(IntChunkedArray positions, IntChunkedArray vertices) {
+		this.positions = positions;
+		this.vertices = vertices;
+	}
+
+	/**
+	 * @param order every vertex number, in topological order
+	 */
+	public static TopologicalOrder of(int[] order) {
+		int[] positions = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			positions[order[i]] = i;
+		}
+
+		return new TopologicalOrder(IntChunkedArray.of(positions), IntChunkedArray.of(order));
+	}
+
+	/**
+	 * @return a copy that shares storage with this order but can be mutated without affecting it
+	 */
+	public TopologicalOrder fork() {
+		return new TopologicalOrder(positions.fork(), vertices.fork());
+	}
+
+	public int size() {
+		return vertices.length();
+	}
+
+	public int position(int vertex) {
+		return positions.get(vertex);
+	}
+
+	public int vertexAt(int position) {
+		return vertices.get(position);
+	}
+
+	/**
+	 * Places a new vertex number, one past the last, at the end of the order.
+	 */
+	public void append(int vertex) {
+		int position = vertices.length();
+
+		positions.grow(vertex + 1);
+		vertices.grow(position + 1);
+		positions.set(vertex, position);
+		vertices.set(position, vertex);
+	}
+
+	/**
+	 * Reorders the vertices so that {@code from} comes before {@code to}. Call before adding the edge to the adjacency
+	 * arrays.
+	 *
+	 * @return false, leaving the order unchanged, if {@code to} already reaches {@code from}
+	 */
+	public boolean addEdge(int from, int to, AdjacencyArrays children, AdjacencyArrays parents) {
+		if (from == to) {
+			return false;
+		}
+
+		int lowerBound = positions.get(to);
+		int upperBound = positions.get(from);
+		if (upperBound < lowerBound) {
+			return true;
+		}
+
+		var forward = new RoaringBitmap();
+		var stack = new IntStack();
+		forward.add(to);
+		stack.push(to);
+
+		while (!stack.isEmpty()) {
+			for (int child : children.neighbours(stack.pop())) {
+				int position = positions.get(child);
+
+				if (position == upperBound) {
+					return false;
+				}
+				if (position < upperBound && forward.checkedAdd(child)) {
+					stack.push(child);
+				}
+			}
+		}
+
+		var backward = new RoaringBitmap();
+		backward.add(from);
+		stack.push(from);
+
+		while (!stack.isEmpty()) {
+			for (int parent : parents.neighbours(stack.pop())) {
+				if (positions.get(parent) > lowerBound && backward.checkedAdd(parent)) {
+					stack.push(parent);
+				}
+			}
+		}
+
+		long[] ancestors = byPosition(backward);
+		long[] descendants = byPosition(forward);
+
+		int[] freed = new int[ancestors.length + descendants.length];
+		for (int i = 0; i < ancestors.length; i++) {
+			freed[i] = (int) (ancestors[i] >>> 32);
+		}
+		for (int i = 0; i < descendants.length; i++) {
+			freed[ancestors.length + i] = (int) (descendants[i] >>> 32);
+		}
+		Arrays.sort(freed);
+
+		int next = 0;
+		for (long entry : ancestors) {
+			place((int) entry, freed[next++]);
+		}
+		for (long entry : descendants) {
+			place((int) entry, freed[next++]);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the vertices as {@code position << 32 | vertex}, sorted by position
+	 */
+	private long[] byPosition(RoaringBitmap vertexSet) {
+		long[] entries = new long[vertexSet.getCardinality()];
+		int[] size = new int[1];
+
+		vertexSet.forEach((int vertex) -> entries[size[0]++] = (long) positions.get(vertex) << 32 | vertex);
+		Arrays.sort(entries);
+
+		return entries;
+	}
+
+	private void place(int vertex, int position) {
+		positions.set(vertex, position);
+		vertices.set(position, vertex);
+	}
+}
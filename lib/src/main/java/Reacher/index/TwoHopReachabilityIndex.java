@@ -0,0 +1,511 @@
+package Reacher.index;
+
+import Reacher.utils.ChunkedArray;
+import Reacher.utils.IntChunkedArray;
+import Reacher.utils.IntStack;
+import org.roaringbitmap.BatchIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Answers reachability queries with 2-hop labels built by pruned landmark labeling instead of storing the closure.
+ * Every vertex is a hub with a rank, higher-degree vertices first and ties in a random order. Each vertex keeps the
+ * sorted ranks of the hubs it reaches (its out-label) and of the hubs that reach it (its in-label), and one vertex
+ * reaches another exactly when the first's out-label and the second's in-label share a hub, so a query is a merge of
+ * two short arrays. The labels are built by a search from every hub in rank order that stops at vertices an earlier
+ * hub already connects it to, which keeps them small on graphs whose closure grows quadratically.
+ *
+ * <p>Queries that list or count descendants or ancestors search the graph from the vertex instead, so the index keeps
+ * its own copy-on-write adjacency lists. Adding an edge resumes the searches of the hubs that reach its source from
+ * its target, and of the hubs its target reaches from its source, each pruned only by hubs of equal or higher rank,
+ * which keeps the highest-ranked vertex on every path in the labels of the path's ends. Removing an edge or a vertex
+ * rebuilds the labels, so the index suits graphs that mostly grow.
+ */
+public class TwoHopReachabilityIndex implements ReachabilityIndex {
+
+	private static final int[] NO_LABELS = new int[0];
+	private static final long SEED = 42;
+
+	private AdjacencyArrays children;
+	private AdjacencyArrays parents;
+	private IntChunkedArray rankOf;
+	private IntChunkedArray vertexOfRank;
+	// sorted hub ranks. Arrays are replaced, never modified.
+	private ChunkedArray<int[]> outLabels;
+	private ChunkedArray<int[]> inLabels;
+
+	private TwoHopReachabilityIndex(
+			AdjacencyArrays children,
+			AdjacencyArrays parents,
+			IntChunkedArray rankOf,
+			IntChunkedArray vertexOfRank,
+			ChunkedArray<int[]> outLabels,
+			ChunkedArray<int[]> inLabels) {
+		this.children = children;
+		this.parents = parents;
+		this.rankOf = rankOf;
+		this.vertexOfRank = vertexOfRank;
+		this.outLabels = outLabels;
+		this.inLabels = inLabels;
+	}
+
+	/**
+	 * Builds the labels of a DAG. The adjacency lists are forked, not copied.
+	 */
+	public static TwoHopReachabilityIndex build(AdjacencyArrays children, AdjacencyArrays parents) {
+		int n = children.numVertices();
+
+		// ties are broken in a random order: ranking the vertices of a path in order would give the last one a label
+		// as long as the path, while a random order gives every vertex a label logarithmic in its length
+		int[] shuffled = new int[n];
+		var random = new Random(SEED);
+		for (int i = 0; i < n; i++) {
+			int j = random.nextInt(i + 1);
+			shuffled[i] = shuffled[j];
+			shuffled[j] = i;
+		}
+
+		// rank the vertices by the product of their degrees, which favours hubs that lie on many paths
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			int v = shuffled[i];
+			long product = Math.min((long) (children.degree(v) + 1) * (parents.degree(v) + 1), Integer.MAX_VALUE);
+			keys[i] = (Integer.MAX_VALUE - product) << 32 | i;
+		}
+		Arrays.sort(keys);
+
+		int[] vertexOfRank = new int[n];
+		int[] rankOf = new int[n];
+		for (int r = 0; r < n; r++) {
+			vertexOfRank[r] = shuffled[(int) keys[r]];
+			rankOf[vertexOfRank[r]] = r;
+		}
+
+		var out = new LabelBuilder(n);
+		var in = new LabelBuilder(n);
+		int[] mark = new int[n];
+		int[] queue = new int[n];
+
+		for (int r = 0; r < n; r++) {
+			int rank = r;
+			int hub = vertexOfRank[r];
+
+			// hubs are added in rank order, so appending keeps the labels sorted
+			search(hub, children, 2 * r + 1, mark, queue,
+					vertex -> vertex == hub || !intersects(out.get(hub), out.size(hub), in.get(vertex), in.size(vertex)),
+					vertex -> in.append(vertex, rank));
+			search(hub, parents, 2 * r + 2, mark, queue,
+					vertex -> vertex == hub || !intersects(out.get(vertex), out.size(vertex), in.get(hub), in.size(hub)),
+					vertex -> out.append(vertex, rank));
+		}
+
+		return new TwoHopReachabilityIndex(
+				children.fork(),
+				parents.fork(),
+				IntChunkedArray.of(rankOf),
+				IntChunkedArray.of(vertexOfRank),
+				ChunkedArray.of(out.build()),
+				ChunkedArray.of(in.build()));
+	}
+
+	/**
+	 * A breadth-first search that labels every vertex it is allowed to, and only continues from those.
+	 */
+	private static void search(int start, AdjacencyArrays neighbours, int stamp, int[] mark, int[] queue,
+			VertexFilter expand, IntConsumer label) {
+		int[] tail = {0};
+		queue[tail[0]++] = start;
+		mark[start] = stamp;
+
+		for (int head = 0; head < tail[0]; head++) {
+			int vertex = queue[head];
+			if (!expand.test(vertex)) {
+				continue;
+			}
+
+			label.accept(vertex);
+			neighbours.forEachNeighbour(vertex, next -> {
+				if (mark[next] != stamp) {
+					mark[next] = stamp;
+					queue[tail[0]++] = next;
+				}
+			});
+		}
+	}
+
+	private interface VertexFilter {
+		boolean test(int vertex);
+	}
+
+	private static boolean intersects(int[] a, int aSize, int[] b, int bSize) {
+		return intersectsUpTo(a, aSize, b, bSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return whether the sorted arrays share a value no greater than {@code maxRank}
+	 */
+	private static boolean intersectsUpTo(int[] a, int aSize, int[] b, int bSize, int maxRank) {
+		int i = 0;
+		int j = 0;
+
+		while (i < aSize && j < bSize) {
+			int x = a[i];
+			int y = b[j];
+
+			if (x > maxRank || y > maxRank) {
+				return false;
+			}
+			if (x == y) {
+				return true;
+			}
+			if (x < y) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public TwoHopReachabilityIndex fork() {
+		return new TwoHopReachabilityIndex(
+				children.fork(), parents.fork(), rankOf.fork(), vertexOfRank.fork(), outLabels.fork(), inLabels.fork());
+	}
+
+	@Override
+	public boolean reaches(int fromVertex, int toVertex) {
+		if (fromVertex == toVertex) {
+			return false;
+		}
+
+		int[] out = outLabels.get(fromVertex);
+		int[] in = inLabels.get(toVertex);
+
+		return intersects(out, out.length, in, in.length);
+	}
+
+	@Override
+	public void forEachDescendant(int vertex, IntConsumer consumer) {
+		reachable(vertex, children).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachAncestor(int vertex, IntConsumer consumer) {
+		reachable(vertex, parents).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	private static RoaringBitmap reachable(int vertex, AdjacencyArrays neighbours) {
+		var found = new RoaringBitmap();
+		var stack = new IntStack();
+		stack.push(vertex);
+
+		while (!stack.isEmpty()) {
+			neighbours.forEachNeighbour(stack.pop(), next -> {
+				if (found.checkedAdd(next)) {
+					stack.push(next);
+				}
+			});
+		}
+
+		return found;
+	}
+
+	@Override
+	public int countDescendants(int vertex) {
+		return reachable(vertex, children).getCardinality();
+	}
+
+	@Override
+	public int countAncestors(int vertex) {
+		return reachable(vertex, parents).getCardinality();
+	}
+
+	@Override
+	public void forEachDescendantOfAny(int[] vertices, IntConsumer consumer) {
+		reachableFromAny(vertices, children).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachAncestorOfAny(int[] vertices, IntConsumer consumer) {
+		reachableFromAny(vertices, parents).forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	/**
+	 * One search from all the vertices at once, so vertices reached from several of them are visited once.
+	 */
+	private static RoaringBitmap reachableFromAny(int[] vertices, AdjacencyArrays neighbours) {
+		var found = new RoaringBitmap();
+		var stack = new IntStack();
+		for (int vertex : vertices) {
+			stack.push(vertex);
+		}
+
+		while (!stack.isEmpty()) {
+			neighbours.forEachNeighbour(stack.pop(), next -> {
+				if (found.checkedAdd(next)) {
+					stack.push(next);
+				}
+			});
+		}
+
+		return found;
+	}
+
+	@Override
+	public void forEachCommonDescendant(int vertexA, int vertexB, IntConsumer consumer) {
+		RoaringBitmap.and(reachable(vertexA, children), reachable(vertexB, children))
+				.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	/**
+	 * A search from {@code fromVertex} that only continues through vertices whose labels say they reach
+	 * {@code toVertex}, so it never leaves the paths between the two by more than one edge.
+	 */
+	@Override
+	public void forEachVertexBetween(int fromVertex, int toVertex, IntConsumer consumer) {
+		var between = new RoaringBitmap();
+		var stack = new IntStack();
+		stack.push(fromVertex);
+
+		while (!stack.isEmpty()) {
+			children.forEachNeighbour(stack.pop(), next -> {
+				if (!between.contains(next) && reaches(next, toVertex)) {
+					between.add(next);
+					stack.push(next);
+				}
+			});
+		}
+
+		between.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+	}
+
+	@Override
+	public void forEachLowestCommonAncestor(int vertexA, int vertexB, AdjacencyArrays children, IntConsumer consumer) {
+		var common = RoaringBitmap.and(reachable(vertexA, parents), reachable(vertexB, parents));
+
+		common.forEach((org.roaringbitmap.IntConsumer) vertex -> {
+			for (int child : children.neighbours(vertex)) {
+				if (common.contains(child)) {
+					return;
+				}
+			}
+			consumer.accept(vertex);
+		});
+	}
+
+	@Override
+	public VertexCursor descendantCursor(int vertex) {
+		return cursorOf(reachable(vertex, children));
+	}
+
+	@Override
+	public VertexCursor ancestorCursor(int vertex) {
+		return cursorOf(reachable(vertex, parents));
+	}
+
+	private static VertexCursor cursorOf(RoaringBitmap vertices) {
+		BatchIterator iterator = vertices.getBatchIterator();
+
+		return buffer -> iterator.hasNext() ? iterator.nextBatch(buffer) : 0;
+	}
+
+	@Override
+	public void addEdge(int fromVertex, int toVertex) {
+		if (!children.add(fromVertex, toVertex)) {
+			return;
+		}
+		parents.add(toVertex, fromVertex);
+
+		for (int rank : inLabels.get(fromVertex)) {
+			int hub = vertexOfRank.get(rank);
+			resumeSearch(toVertex, children, vertex -> !connectedUpTo(hub, vertex, rank), vertex -> inLabels.set(vertex, insert(inLabels.get(vertex), rank)));
+		}
+		for (int rank : outLabels.get(toVertex)) {
+			int hub = vertexOfRank.get(rank);
+			resumeSearch(fromVertex, parents, vertex -> !connectedUpTo(vertex, hub, rank), vertex -> outLabels.set(vertex, insert(outLabels.get(vertex), rank)));
+		}
+	}
+
+	private boolean connectedUpTo(int fromVertex, int toVertex, int maxRank) {
+		int[] out = outLabels.get(fromVertex);
+		int[] in = inLabels.get(toVertex);
+
+		return intersectsUpTo(out, out.length, in, in.length, maxRank);
+	}
+
+	private static void resumeSearch(int start, AdjacencyArrays neighbours, VertexFilter expand, IntConsumer label) {
+		var visited = new RoaringBitmap();
+		var stack = new IntStack();
+		visited.add(start);
+		stack.push(start);
+
+		while (!stack.isEmpty()) {
+			int vertex = stack.pop();
+			if (!expand.test(vertex)) {
+				continue;
+			}
+
+			label.accept(vertex);
+			neighbours.forEachNeighbour(vertex, next -> {
+				if (visited.checkedAdd(next)) {
+					stack.push(next);
+				}
+			});
+		}
+	}
+
+	private static int[] insert(int[] labels, int rank) {
+		int i = Arrays.binarySearch(labels, rank);
+		if (i >= 0) {
+			return labels;
+		}
+
+		int at = -i - 1;
+		int[] inserted = new int[labels.length + 1];
+		System.arraycopy(labels, 0, inserted, 0, at);
+		inserted[at] = rank;
+		System.arraycopy(labels, at, inserted, at + 1, labels.length - at);
+
+		return inserted;
+	}
+
+	@Override
+	public void removeEdge(int fromVertex, int toVertex, AdjacencyArrays children) {
+		if (this.children.remove(fromVertex, toVertex)) {
+			parents.remove(toVertex, fromVertex);
+			relabel();
+		}
+	}
+
+	@Override
+	public void addVertex(int vertex) {
+		if (vertex >= rankOf.length()) {
+			children.grow(vertex + 1);
+			parents.grow(vertex + 1);
+			rankOf.grow(vertex + 1);
+			outLabels.grow(vertex + 1);
+			inLabels.grow(vertex + 1);
+
+			// a new vertex has no edges, so it is ranked last
+			int rank = vertexOfRank.length();
+			vertexOfRank.grow(rank + 1);
+			vertexOfRank.set(rank, vertex);
+			rankOf.set(vertex, rank);
+		}
+
+		int[] own = {rankOf.get(vertex)};
+		outLabels.set(vertex, own);
+		inLabels.set(vertex, own);
+	}
+
+	@Override
+	public void removeVertex(int vertex, AdjacencyArrays children) {
+		this.parents.forEachNeighbour(vertex, parent -> this.children.remove(parent, vertex));
+		this.children.forEachNeighbour(vertex, child -> parents.remove(child, vertex));
+		this.children.removeAll(vertex);
+		parents.removeAll(vertex);
+
+		relabel();
+	}
+
+	@Override
+	public ReachabilityIndex rebuild(AdjacencyArrays children, AdjacencyArrays parents) {
+		return build(children, parents);
+	}
+
+	private void relabel() {
+		var rebuilt = build(children, parents);
+
+		rankOf = rebuilt.rankOf;
+		vertexOfRank = rebuilt.vertexOfRank;
+		outLabels = rebuilt.outLabels;
+		inLabels = rebuilt.inLabels;
+	}
+
+	/**
+	 * Counting searches the graph from every vertex.
+	 */
+	@Override
+	public long numPairs() {
+		long pairs = 0;
+		for (int vertex = 0; vertex < rankOf.length(); vertex++) {
+			pairs += countDescendants(vertex);
+		}
+
+		return pairs;
+	}
+
+	/**
+	 * @return the size of the labels and ranks. The index's adjacency lists share storage with the graph's and are
+	 *     not counted.
+	 */
+	@Override
+	public long sizeInBytes() {
+		long bytes = 2L * Integer.BYTES * rankOf.length();
+
+		for (int vertex = 0; vertex < rankOf.length(); vertex++) {
+			bytes += 16 + (long) Integer.BYTES * outLabels.get(vertex).length;
+			bytes += 16 + (long) Integer.BYTES * inLabels.get(vertex).length;
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * @return the average number of hubs in a label, the cost of a query
+	 */
+	public double averageLabelSize() {
+		int n = rankOf.length();
+		if (n == 0) {
+			return 0;
+		}
+
+		long total = 0;
+		for (int vertex = 0; vertex < n; vertex++) {
+			total += outLabels.get(vertex).length + inLabels.get(vertex).length;
+		}
+
+		return (double) total / (2 * n);
+	}
+
+	/**
+	 * Growable label arrays, used only while building.
+	 */
+	private static final class LabelBuilder {
+		private final int[][] labels;
+		private final int[] sizes;
+
+		private LabelBuilder(int n) {
+			labels = new int[n][];
+			sizes = new int[n];
+			Arrays.fill(labels, NO_LABELS);
+		}
+
+		private int[] get(int vertex) {
+			return labels[vertex];
+		}
+
+		private int size(int vertex) {
+			return sizes[vertex];
+		}
+
+		private void append(int vertex, int rank) {
+			if (sizes[vertex] == labels[vertex].length) {
+				labels[vertex] = Arrays.copyOf(labels[vertex], Math.max(4, 2 * sizes[vertex]));
+			}
+			labels[vertex][sizes[vertex]++] = rank;
+		}
+
+		private int[][] build() {
+			for (int vertex = 0; vertex < labels.length; vertex++) {
+				labels[vertex] = Arrays.copyOf(labels[vertex], sizes[vertex]);
+			}
+			return labels;
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package Reacher.index;
+
+/**
+ * Walks a set of vertex numbers in ascending order, a batch at a time.
+ */
+public interface VertexCursor {
+
+	/**
+	 * Copies the next vertex numbers into the buffer.
+	 *
+	 * @return the number of vertex numbers copied, 0 once the cursor is exhausted
+	 */
+	int next(int[] buffer);
+}
@@ -0,0 +1,63 @@
+package Reacher.metrics;
+
+/**
+ * Keeps a {@link Histogram} of the latencies and of the result sizes of every operation, and of the time mutations
+ * wait for and hold the write lock.
+ */
+public class HistogramMetricsSink implements MetricsSink {
+
+	private final Histogram[] latencies;
+	private final Histogram[] resultSizes;
+	private final Histogram lockWait;
+	private final Histogram lockHold;
+
+	public HistogramMetricsSink() {
+		int numOperations = Operation.values().length;
+		latencies = new Histogram[numOperations];
+		resultSizes = new Histogram[numOperations];
+
+		for (int i = 0; i < numOperations; i++) {
+			latencies[i] = new Histogram();
+			resultSizes[i] = new Histogram();
+		}
+
+		lockWait = new Histogram();
+		lockHold = new Histogram();
+	}
+
+	@Override
+	public void recordLatency(Operation operation, long nanos) {
+		latencies[operation.ordinal()].record(nanos);
+	}
+
+	@Override
+	public void recordResultSize(Operation operation, long size) {
+		resultSizes[operation.ordinal()].record(size);
+	}
+
+	@Override
+	public void recordLockWait(long nanos) {
+		lockWait.record(nanos);
+	}
+
+	@Override
+	public void recordLockHold(long nanos) {
+		lockHold.record(nanos);
+	}
+
+	public Histogram latency(Operation operation) {
+		return latencies[operation.ordinal()];
+	}
+
+	public Histogram resultSize(Operation operation) {
+		return resultSizes[operation.ordinal()];
+	}
+
+	public Histogram lockWait() {
+		return lockWait;
+	}
+
+	public Histogram lockHold() {
+		return lockHold;
+	}
+}
@@ -0,0 +1,144 @@
+package Reacher.metrics;
+
+import Reacher.Graph;
+import Reacher.ReachabilityBackend;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the histograms of a {@link HistogramMetricsSink} and the size of a graph's reachability index as read-only
+ * attributes of an MBean on the platform MBean server, so they can be read with JConsole or any JMX client. For every
+ * operation there are attributes such as {@code getAncestors.count}, {@code getAncestors.p99Nanos} and
+ * {@code getAncestors.meanResultSize}; lock times are under {@code lockWait} and {@code lockHold}, the counts of the
+ * reachability filter under {@code reachabilityFilter}, and the counts of the graph's result cache, if it has one,
+ * under {@code resultCache}. Values are read when a client asks for them,
+ * the index size by walking every row. The number of pairs is only published for the closure backend.
+ */
+public class JmxMetricsAdapter implements DynamicMBean {
+
+	private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+	private final List<MBeanAttributeInfo> attributeInfo = new ArrayList<>();
+	private final MBeanInfo info;
+
+	public JmxMetricsAdapter(HistogramMetricsSink sink, Graph graph) {
+		for (Operation operation : Operation.values()) {
+			addLatency(operation.getMethodName(), sink.latency(operation));
+
+			var resultSize = sink.resultSize(operation);
+			add(operation.getMethodName() + ".meanResultSize", double.class, resultSize::getMean);
+			add(operation.getMethodName() + ".maxResultSize", long.class, resultSize::getMax);
+		}
+
+		addLatency("lockWait", sink.lockWait());
+		addLatency("lockHold", sink.lockHold());
+
+		// counting the pairs of 2-hop labels searches the graph from every node, too slow for a polled attribute
+		if (graph.reachabilityBackend() == ReachabilityBackend.CLOSURE) {
+			add("reachabilityIndex.pairs", long.class, graph::reachabilityIndexPairs);
+		}
+		add("reachabilityIndex.bytes", long.class, graph::reachabilityIndexBytes);
+
+		add("reachabilityFilter.probeCount", long.class, () -> graph.getReachabilityFilterStats().probeCount());
+		add("reachabilityFilter.rejectionCount", long.class, () -> graph.getReachabilityFilterStats().rejectionCount());
+		add("reachabilityFilter.negativeCount", long.class, () -> graph.getReachabilityFilterStats().negativeCount());
+		add("reachabilityFilter.hitRate", double.class, () -> graph.getReachabilityFilterStats().hitRate());
+
+		if (graph.getResultCacheStats().isPresent()) {
+			add("resultCache.hitCount", long.class, () -> graph.getResultCacheStats().orElseThrow().hitCount());
+			add("resultCache.missCount", long.class, () -> graph.getResultCacheStats().orElseThrow().missCount());
+			add("resultCache.hitRate", double.class, () -> graph.getResultCacheStats().orElseThrow().hitRate());
+			add("resultCache.evictionCount", long.class, () -> graph.getResultCacheStats().orElseThrow().evictionCount());
+		}
+
+		info = new MBeanInfo(getClass().getName(), "Reacher graph metrics",
+				attributeInfo.toArray(new MBeanAttributeInfo[0]), null, null, null);
+	}
+
+	/**
+	 * Registers an adapter on the platform MBean server under the given name, e.g.
+	 * {@code Reacher:type=Graph,name=orders}.
+	 */
+	public static JmxMetricsAdapter register(String objectName, HistogramMetricsSink sink, Graph graph) throws JMException {
+		var adapter = new JmxMetricsAdapter(sink, graph);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(adapter, new ObjectName(objectName));
+		return adapter;
+	}
+
+	public static void unregister(String objectName) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.unregisterMBean(new ObjectName(objectName));
+	}
+
+	private void addLatency(String name, Histogram histogram) {
+		add(name + ".count", long.class, histogram::getCount);
+		add(name + ".meanNanos", double.class, histogram::getMean);
+		add(name + ".p50Nanos", long.class, () -> histogram.getValueAtPercentile(50));
+		add(name + ".p99Nanos", long.class, () -> histogram.getValueAtPercentile(99));
+		add(name + ".p999Nanos", long.class, () -> histogram.getValueAtPercentile(99.9));
+		add(name + ".maxNanos", long.class, histogram::getMax);
+	}
+
+	private void add(String name, Class<?> type, Supplier<Object> value) {
+		attributes.put(name, value);
+		attributeInfo.add(new MBeanAttributeInfo(name, type.getName(), name, true, false, false));
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		var value = attributes.get(attribute);
+
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+
+		return value.get();
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] names) {
+		var list = new AttributeList();
+
+		for (String name : names) {
+			var value = attributes.get(name);
+			if (value != null) {
+				list.add(new Attribute(name, value.get()));
+			}
+		}
+
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Graph metrics are read-only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) {
+		throw new UnsupportedOperationException("Graph metrics have no operations");
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		return info;
+	}
+}
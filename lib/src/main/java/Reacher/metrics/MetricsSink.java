@@ -0,0 +1,26 @@
+package Reacher.metrics;
+
+/**
+ * Receives measurements from an instrumented graph. Methods are called on the thread that made the call being
+ * measured, so implementations must be thread-safe, and should neither block nor allocate.
+ */
+public interface MetricsSink {
+
+	void recordLatency(Operation operation, long nanos);
+
+	/**
+	 * Records the number of nodes, edges or answers an operation returned. Operations that return a lazy cursor or
+	 * stream, or nothing, record no size.
+	 */
+	void recordResultSize(Operation operation, long size);
+
+	/**
+	 * Records how long a mutation waited for the graph's write lock.
+	 */
+	void recordLockWait(long nanos);
+
+	/**
+	 * Records how long a mutation held the graph's write lock.
+	 */
+	void recordLockHold(long nanos);
+}
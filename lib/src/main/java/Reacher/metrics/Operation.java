@@ -0,0 +1,49 @@
+package Reacher.metrics;
+
+/**
+ * The methods of {@link Reacher.service.IGraph} that {@link Reacher.InstrumentedGraph} times.
+ */
+public enum Operation {
+	SNAPSHOT("snapshot"),
+	GET_NODE("getNode"),
+	GET_CHILDREN("getChildren"),
+	GET_PARENTS("getParents"),
+	GET_ANCESTORS("getAncestors"),
+	GET_DESCENDANTS("getDescendants"),
+	DOES_PATH_EXIST("doesPathExist"),
+	DOES_PATH_EXIST_BATCH("doesPathExistBatch"),
+	GET_DESCENDANTS_OF_ALL("getDescendantsOfAll"),
+	GET_ANCESTORS_OF_ALL("getAncestorsOfAll"),
+	LOWEST_COMMON_ANCESTORS("lowestCommonAncestors"),
+	LOWEST_COMMON_ANCESTORS_BATCH("lowestCommonAncestorsBatch"),
+	COMMON_DESCENDANTS("commonDescendants"),
+	COMMON_DESCENDANTS_BATCH("commonDescendantsBatch"),
+	FOR_EACH_DESCENDANT("forEachDescendant"),
+	FOR_EACH_ANCESTOR("forEachAncestor"),
+	COUNT_DESCENDANTS("countDescendants"),
+	COUNT_ANCESTORS("countAncestors"),
+	COUNT_PATHS("countPaths"),
+	COUNT_PATHS_EXACT("countPathsExact"),
+	DESCENDANT_CURSOR("descendantCursor"),
+	ANCESTOR_CURSOR("ancestorCursor"),
+	DESCENDANT_IDS("descendantIds"),
+	ANCESTOR_IDS("ancestorIds"),
+	TOPOLOGICAL_ORDER("topologicalOrder"),
+	GET_NODES("getNodes"),
+	GET_EDGES("getEdges"),
+	ADD_NODE("addNode"),
+	REMOVE_NODE("removeNode"),
+	ADD_EDGE("addEdge"),
+	REMOVE_EDGE("removeEdge"),
+	APPLY_BATCH("applyBatch");
+
+	private final String methodName;
+
+	Operation(String methodName) {
+		this.methodName = methodName;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+}
@@ -1,10 +1,19 @@
 package Reacher.service;
 
 import Reacher.domain.INode;
+import Reacher.domain.Mutation;
+
+import java.util.List;
 
 public interface GraphMutationService {
 	void addNode(INode node);
 	void removeNode(int nodeId);
 	void addEdge(int fromNodeId, int toNodeId);
 	void removeEdge(int fromNodeId, int toNodeId);
+
+	/**
+	 * Applies the mutations in order as one atomic change: readers see either none or all of them, and if one
+	 * fails none are applied.
+	 */
+	void applyBatch(List<Mutation> mutations);
 }
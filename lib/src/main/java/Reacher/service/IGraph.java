@@ -3,16 +3,126 @@ package Reacher.service;
 import Reacher.domain.INode;
 import com.google.common.collect.Multimap;
 
+import java.math.BigInteger;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public interface IGraph extends GraphMutationService {
+
+	/**
+	 * @return a read-only view of the graph as it is now. Queries on the view are mutually consistent and never see
+	 *     later mutations; mutating the view throws {@link UnsupportedOperationException}.
+	 */
+	IGraph snapshot();
+
 	Optional<INode> getNode(int nodeId);
 	List<INode> getChildren(int nodeId);
 	List<INode> getParents(int nodeId);
 	List<INode> getAncestors(int nodeId);
 	List<INode> getDescendants(int nodeId);
 	boolean doesPathExist(int nodeAId, int nodeBId);
+
+	/**
+	 * Checks every pair {@code (fromNodeIds[i], toNodeIds[i])} against the same state of the graph.
+	 *
+	 * @return a bit set with bit {@code i} set if a path exists from {@code fromNodeIds[i]} to {@code toNodeIds[i]}
+	 */
+	BitSet doesPathExist(int[] fromNodeIds, int[] toNodeIds);
+
+	/**
+	 * @return every node that is a descendant of at least one of the given nodes, each listed once
+	 */
+	List<INode> getDescendantsOfAll(int[] nodeIds);
+
+	/**
+	 * @return every node that is an ancestor of at least one of the given nodes, each listed once
+	 */
+	List<INode> getAncestorsOfAll(int[] nodeIds);
+
+	/**
+	 * Finds the merge bases of two nodes: the common ancestors that are not ancestors of another common ancestor.
+	 * Here a node counts as its own ancestor, so if one node is an ancestor of the other it is the only result.
+	 */
+	List<INode> lowestCommonAncestors(int nodeAId, int nodeBId);
+
+	/**
+	 * Answers {@link #lowestCommonAncestors(int, int)} for every pair {@code (nodeAIds[i], nodeBIds[i])} against the
+	 * same state of the graph.
+	 */
+	List<List<INode>> lowestCommonAncestors(int[] nodeAIds, int[] nodeBIds);
+
+	/**
+	 * @return every node that is a descendant of both nodes, where a node counts as its own descendant, so if one node
+	 *     is a descendant of the other it is included
+	 */
+	List<INode> commonDescendants(int nodeAId, int nodeBId);
+
+	/**
+	 * Answers {@link #commonDescendants(int, int)} for every pair {@code (nodeAIds[i], nodeBIds[i])} against the same
+	 * state of the graph.
+	 */
+	List<List<INode>> commonDescendants(int[] nodeAIds, int[] nodeBIds);
+
+	/**
+	 * Passes the id of every descendant to the consumer without materialising a list. Mutations made while the
+	 * walk is in progress are not seen by it.
+	 */
+	void forEachDescendant(int nodeId, IntConsumer consumer);
+
+	/**
+	 * Passes the id of every ancestor to the consumer without materialising a list. Mutations made while the
+	 * walk is in progress are not seen by it.
+	 */
+	void forEachAncestor(int nodeId, IntConsumer consumer);
+
+	/**
+	 * @return the number of descendants of the node, without listing them
+	 */
+	int countDescendants(int nodeId);
+
+	/**
+	 * @return the number of ancestors of the node, without listing them
+	 */
+	int countAncestors(int nodeId);
+
+	/**
+	 * @return the number of distinct paths from one node to another, or {@link Long#MAX_VALUE} if there are more
+	 */
+	long countPaths(int fromNodeId, int toNodeId);
+
+	/**
+	 * @return the exact number of distinct paths from one node to another
+	 */
+	BigInteger countPathsExact(int fromNodeId, int toNodeId);
+
+	/**
+	 * @return a cursor over the ids of the node's current descendants
+	 */
+	NodeIdCursor descendantCursor(int nodeId);
+
+	/**
+	 * @return a cursor over the ids of the node's current ancestors
+	 */
+	NodeIdCursor ancestorCursor(int nodeId);
+
+	/**
+	 * @return a lazy stream of the ids of the node's current descendants
+	 */
+	IntStream descendantIds(int nodeId);
+
+	/**
+	 * @return a lazy stream of the ids of the node's current ancestors
+	 */
+	IntStream ancestorIds(int nodeId);
+
+	/**
+	 * @return every node, each before all of its descendants
+	 */
+	List<INode> topologicalOrder();
+
 	List<INode> getNodes();
 	Multimap<Integer, Integer> getEdges();
 }
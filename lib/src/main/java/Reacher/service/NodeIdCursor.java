@@ -0,0 +1,50 @@
+package Reacher.service;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks the ids of a set of nodes a batch at a time, copying them into a caller-supplied buffer.
+ */
+public interface NodeIdCursor {
+
+	int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * Copies the next node ids into the buffer.
+	 *
+	 * @return the number of ids copied, 0 once the cursor is exhausted
+	 */
+	int next(int[] buffer);
+
+	/**
+	 * @return a sequential stream that pulls from this cursor lazily, {@link #DEFAULT_BATCH_SIZE} ids at a time
+	 */
+	default IntStream stream() {
+		var spliterator = new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+			private final int[] buffer = new int[DEFAULT_BATCH_SIZE];
+			private int position;
+			private int limit;
+
+			@Override
+			public boolean tryAdvance(IntConsumer action) {
+				if (position == limit) {
+					limit = next(buffer);
+					position = 0;
+
+					if (limit == 0) {
+						return false;
+					}
+				}
+
+				action.accept(buffer[position++]);
+				return true;
+			}
+		};
+
+		return StreamSupport.intStream(spliterator, false);
+	}
+}
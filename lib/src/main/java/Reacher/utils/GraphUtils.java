@@ -1,127 +1,474 @@
 package Reacher.utils;
 
 import Reacher.Graph;
+import Reacher.ReachabilityBackend;
 import Reacher.domain.INode;
-import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableMap;
+import Reacher.domain.exceptions.NodeNotFoundException;
+import Reacher.index.AdjacencyArrays;
+import Reacher.index.BitmapReachabilityIndex;
+import Reacher.index.CondensedReachabilityIndex;
+import Reacher.index.ReachabilityIndex;
+import Reacher.index.ReachabilityIndexFile;
+import Reacher.index.TopologicalOrder;
+import Reacher.index.TwoHopReachabilityIndex;
 import com.google.common.collect.Multimap;
-import org.apache.commons.math3.util.Pair;
-import org.ejml.data.DMatrixRMaj;
-import org.ejml.data.DMatrixSparseCSC;
-import org.ejml.dense.row.CommonOps_DDRM;
-import org.ejml.ops.DConvertMatrixStruct;
+import org.roaringbitmap.RoaringBitmap;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class GraphUtils {
 
 	public static Graph constructGraph(List<INode> nodes, Multimap<Integer, Integer> edges) {
+		return constructGraph(nodes, edges, null);
+	}
+
+	/**
+	 * @param reachabilityIndexFile a file written by {@link Graph#writeReachabilityIndex(Path)} for the same nodes in
+	 *     the same order, whose rows are mapped instead of computing the closure; or null to compute it
+	 */
+	public static Graph constructGraph(List<INode> nodes, Multimap<Integer, Integer> edges, Path reachabilityIndexFile) {
+		return constructGraph(nodes, edges, reachabilityIndexFile, 1);
+	}
+
+	/**
+	 * @param parallelism the number of threads that compute the closure, see
+	 *     {@link #constructReachabilityIndex(AdjacencyArrays, AdjacencyArrays, int)}
+	 */
+	public static Graph constructGraph(List<INode> nodes, Multimap<Integer, Integer> edges, Path reachabilityIndexFile, int parallelism) {
+		return constructGraph(nodes, edges, reachabilityIndexFile, parallelism, false);
+	}
+
+	/**
+	 * @param allowCycles whether the edges may contain cycles, in which case the index is a
+	 *     {@link CondensedReachabilityIndex} over the strongly connected components
+	 */
+	public static Graph constructGraph(List<INode> nodes, Multimap<Integer, Integer> edges, Path reachabilityIndexFile, int parallelism,
+			boolean allowCycles) {
+		return constructGraph(nodes, edges, reachabilityIndexFile, parallelism, allowCycles, ReachabilityBackend.CLOSURE);
+	}
+
+	/**
+	 * @param backend how the index of a graph that does not allow cycles is stored. Only the closure can be mapped
+	 *     from a file, and 2-hop labels are always built on the calling thread.
+	 */
+	public static Graph constructGraph(List<INode> nodes, Multimap<Integer, Integer> edges, Path reachabilityIndexFile, int parallelism,
+			boolean allowCycles, ReachabilityBackend backend) {
+		if (allowCycles && reachabilityIndexFile != null) {
+			throw new IllegalArgumentException("A graph that allows cycles cannot map a reachability index file");
+		}
+		if (backend == ReachabilityBackend.TWO_HOP_LABELS && (allowCycles || reachabilityIndexFile != null)) {
+			throw new IllegalArgumentException("2-hop labels cannot allow cycles or be mapped from a reachability index file");
+		}
+
 		int n = nodes.size();
-		Map<Integer, INode> nodeIdToNodeMap = buildNodeIdToNodeMap(nodes);
-		Map<Integer, Integer> nodeIdToIntegerIds = assignVertexNumToNodes(nodes);
-		Map<Integer, INode> integerIdToNodeMap = buildIntegerIdToNodeMap(nodes, nodeIdToIntegerIds);
-		DMatrixSparseCSC adjacencyMatrix = ((MatrixWrapper) constructAdjacencyMatrix(n, edges, nodeIdToIntegerIds)).matrix;
-		DMatrixSparseCSC identityMatrix = ((MatrixWrapper) buildIdentityMatrix(n)).matrix;
-		DMatrixSparseCSC reachabilityMatrix = ((MatrixWrapper) constructReachabilityMatrix(adjacencyMatrix, identityMatrix)).matrix;
+		SegmentedIntIntMap nodeIdToIntegerIds = assignVertexNumToNodes(nodes);
+		INode[] integerIdToNode = nodes.toArray(new INode[0]);
 
-		return new Graph(n, integerIdToNodeMap, nodeIdToIntegerIds, nodeIdToNodeMap, adjacencyMatrix, reachabilityMatrix);
+		int m = edges.size();
+		int[] sources = new int[m];
+		int[] targets = new int[m];
+		int e = 0;
+		for (var edge : edges.entries()) {
+			sources[e] = getVertexNum(nodeIdToIntegerIds, edge.getKey());
+			targets[e] = getVertexNum(nodeIdToIntegerIds, edge.getValue());
+			e++;
+		}
+
+		AdjacencyArrays children = AdjacencyArrays.fromEdges(n, sources, targets, m);
+		AdjacencyArrays parents = AdjacencyArrays.fromEdges(n, targets, sources, m);
+		ReachabilityIndex reachabilityIndex;
+		if (allowCycles) {
+			reachabilityIndex = CondensedReachabilityIndex.build(children, parallelism);
+		} else if (backend == ReachabilityBackend.TWO_HOP_LABELS) {
+			reachabilityIndex = TwoHopReachabilityIndex.build(children, parents);
+		} else if (reachabilityIndexFile == null) {
+			reachabilityIndex = constructReachabilityIndex(children, parents, parallelism);
+		} else {
+			reachabilityIndex = openReachabilityIndex(reachabilityIndexFile, n);
+		}
+
+		return new Graph(n, integerIdToNode, nodeIdToIntegerIds, children, parents, reachabilityIndex, allowCycles);
 	}
 
-	private static Map<Integer, INode> buildIntegerIdToNodeMap(List<INode> nodes, Map<Integer, Integer> nodeIdToIntegerId) {
-		return nodes.stream()
-				.collect(Collectors.toMap(node -> nodeIdToIntegerId.get(node.getId()), Function.identity()));
+	private static ReachabilityIndex openReachabilityIndex(Path file, int n) {
+		try {
+			var indexFile = ReachabilityIndexFile.open(file);
+
+			if (indexFile.numVertices() != n) {
+				throw new IllegalArgumentException(String.format(
+						"Reachability index file has %d vertices but the graph has %d", indexFile.numVertices(), n));
+			}
+
+			return BitmapReachabilityIndex.mapped(indexFile);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
-	private static Map<Integer, INode> buildNodeIdToNodeMap(List<INode> nodes) {
-		return nodes.stream()
-				.collect(Collectors.toMap(INode::getId, Function.identity()));
+	/**
+	 * Builds the descendant bitmap of every vertex from its children's bitmaps, sinks first, and the ancestor
+	 * bitmap of every vertex from its parents' bitmaps, sources first.
+	 *
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static BitmapReachabilityIndex constructReachabilityIndex(AdjacencyArrays children, AdjacencyArrays parents) {
+		int n = children.numVertices();
+		int[] order = topologicalSort(children, parents);
+
+		RoaringBitmap[] descendants = new RoaringBitmap[n];
+		RoaringBitmap[] ancestors = new RoaringBitmap[n];
+
+		for (int k = n - 1; k >= 0; k--) {
+			int v = order[k];
+			descendants[v] = unionOfNeighbourhoods(children, v, descendants);
+		}
+
+		for (int k = 0; k < n; k++) {
+			int v = order[k];
+			ancestors[v] = unionOfNeighbourhoods(parents, v, ancestors);
+		}
+
+		return new BitmapReachabilityIndex(descendants, ancestors);
 	}
 
-	@VisibleForTesting
-	static Matrix constructReachabilityMatrix(DMatrixSparseCSC adjacencyMatrix, DMatrixSparseCSC identityMatrix) {
+	/**
+	 * Builds the same index as {@link #constructReachabilityIndex(AdjacencyArrays, AdjacencyArrays)} on a
+	 * {@link ForkJoinPool} with the given parallelism. Vertices are grouped into levels: a vertex's descendant level is
+	 * one more than the highest level of its children, so the rows of a level only read rows of lower levels and can
+	 * be built concurrently. Ancestor rows are built the same way over the parents. Levels are built one after the
+	 * other, and the vertices of a level are split into tasks that idle threads steal.
+	 *
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static BitmapReachabilityIndex constructReachabilityIndex(AdjacencyArrays children, AdjacencyArrays parents, int parallelism) {
+		if (parallelism <= 1) {
+			return constructReachabilityIndex(children, parents);
+		}
+
+		int[] order = topologicalSort(children, parents);
+		var pool = new ForkJoinPool(parallelism);
+
+		try {
+			return new BitmapReachabilityIndex(
+					constructRowsByLevel(children, order, true, pool),
+					constructRowsByLevel(parents, order, false, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @param reverse whether the neighbours come after a vertex in the topological order rather than before it
+	 */
+	private static RoaringBitmap[] constructRowsByLevel(AdjacencyArrays neighbours, int[] order, boolean reverse, ForkJoinPool pool) {
+		int n = order.length;
+		int[] level = new int[n];
+		int numLevels = 0;
+
+		for (int k = 0; k < n; k++) {
+			int v = order[reverse ? n - 1 - k : k];
+			int[] vertexLevel = new int[1];
+
+			neighbours.forEachNeighbour(v, neighbour -> vertexLevel[0] = Math.max(vertexLevel[0], level[neighbour] + 1));
+			level[v] = vertexLevel[0];
+			numLevels = Math.max(numLevels, vertexLevel[0] + 1);
+		}
+
+		// counting sort of the vertices by level
+		int[] levelStart = new int[numLevels + 1];
+		for (int v = 0; v < n; v++) {
+			levelStart[level[v] + 1]++;
+		}
+		for (int l = 0; l < numLevels; l++) {
+			levelStart[l + 1] += levelStart[l];
+		}
 
+		int[] byLevel = new int[n];
+		int[] next = Arrays.copyOf(levelStart, numLevels);
+		for (int v = 0; v < n; v++) {
+			byLevel[next[level[v]]++] = v;
+		}
 
-		DMatrixRMaj a = DConvertMatrixStruct.convert(adjacencyMatrix, (DMatrixRMaj) null);
-		DMatrixRMaj i = DConvertMatrixStruct.convert(identityMatrix, (DMatrixRMaj) null);
+		var rows = new RoaringBitmap[n];
+		for (int l = 0; l < numLevels; l++) {
+			pool.invoke(new LevelTask(neighbours, rows, byLevel, levelStart[l], levelStart[l + 1]));
+		}
 
-		DMatrixRMaj iMinusA = CommonOps_DDRM.subtract(i, a, null);
+		return rows;
+	}
 
-		DMatrixRMaj inverted = new DMatrixRMaj(a.numRows, a.numCols);
-		CommonOps_DDRM.invert(iMinusA, inverted);
+	private static RoaringBitmap unionOfNeighbourhoods(AdjacencyArrays neighbours, int v, RoaringBitmap[] rows) {
+		var row = new RoaringBitmap();
 
-		DMatrixRMaj left = CommonOps_DDRM.mult(i, inverted, null);
-		DMatrixRMaj ret = CommonOps_DDRM.subtract(left, i, null);
+		neighbours.forEachNeighbour(v, neighbour -> {
+			row.add(neighbour);
+			row.or(rows[neighbour]);
+		});
 
-		return new MatrixWrapper(DConvertMatrixStruct.convert(ret, (DMatrixSparseCSC) null, 0));
+		row.runOptimize();
+		return row;
 	}
 
-	@VisibleForTesting
-	static Matrix buildIdentityMatrix(int n) {
-		var matrix = new DMatrixSparseCSC(n, n, 2 * n);
+	/**
+	 * Counts the distinct paths from one vertex to another. Only the vertices on some path between the two take part,
+	 * as found by {@link ReachabilityIndex#forEachVertexBetween(int, int, java.util.function.IntConsumer)}. They are visited in reverse
+	 * topological order, in which the number of paths from a vertex to {@code to} is the sum over its children.
+	 *
+	 * <p>Counts are summed as longs. If a sum overflows, every count is converted to a {@link BigInteger} and the rest
+	 * of the sums are exact too.
+	 *
+	 * @return the number of paths, 0 if {@code from} does not reach {@code to} or is {@code to}
+	 */
+	public static BigInteger countPaths(ReachabilityIndex index, AdjacencyArrays children, TopologicalOrder topologicalOrder,
+			int from, int to) {
+		if (!index.reaches(from, to)) {
+			return BigInteger.ZERO;
+		}
+
+		// the vertices on paths between from and to, ascending
+		var vertices = new RoaringBitmap();
+		index.forEachVertexBetween(from, to, vertices::add);
+		vertices.add(from);
+		vertices.add(to);
+		int[] between = vertices.toArray();
+		int numBetween = between.length;
+
+		// latest position first
+		long[] order = new long[numBetween];
+		for (int i = 0; i < numBetween; i++) {
+			order[i] = (long) (Integer.MAX_VALUE - topologicalOrder.position(between[i])) << 32 | i;
+		}
+		Arrays.sort(order);
+
+		long[] paths = new long[numBetween];
+		BigInteger[] exactPaths = null;
 
-		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < n; j++) {
-				if (j == i) {
-					matrix.set(i, j, 1);
-				} else {
-					matrix.set(i, j, 0);
+		for (long entry : order) {
+			int i = (int) entry;
+			int vertex = between[i];
+
+			if (vertex == to) {
+				paths[i] = 1;
+				continue;
+			}
+
+			long sum = 0;
+			BigInteger exactSum = exactPaths != null ? BigInteger.ZERO : null;
+
+			for (int child : children.neighbours(vertex)) {
+				int c = Arrays.binarySearch(between, 0, numBetween, child);
+				if (c < 0) {
+					continue;
+				}
+
+				if (exactPaths != null) {
+					exactSum = exactSum.add(exactPaths[c]);
+					continue;
 				}
+
+				try {
+					sum = Math.addExact(sum, paths[c]);
+				} catch (ArithmeticException e) {
+					exactPaths = new BigInteger[numBetween];
+					for (int j = 0; j < numBetween; j++) {
+						exactPaths[j] = BigInteger.valueOf(paths[j]);
+					}
+					exactSum = BigInteger.valueOf(sum).add(exactPaths[c]);
+				}
+			}
+
+			if (exactPaths != null) {
+				exactPaths[i] = exactSum;
+			} else {
+				paths[i] = sum;
 			}
 		}
 
-		return new MatrixWrapper(matrix);
+		int f = Arrays.binarySearch(between, 0, numBetween, from);
+		return exactPaths != null ? exactPaths[f] : BigInteger.valueOf(paths[f]);
 	}
 
-	@VisibleForTesting
-	static Matrix constructAdjacencyMatrix(int n, Multimap<Integer, Integer> edges, Map<Integer, Integer> nodeIdToVertexNum) {
+	/**
+	 * Kahn's algorithm over the adjacency arrays.
+	 *
+	 * @return the vertex numbers in topological order
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static int[] topologicalSort(AdjacencyArrays children, AdjacencyArrays parents) {
+		int n = children.numVertices();
+		int[] inDegree = new int[n];
+		int[] order = new int[n];
+		int[] tail = new int[1];
 
-		var matrix = new DMatrixSparseCSC(n, n, 2 * n);
+		for (int v = 0; v < n; v++) {
+			inDegree[v] = parents.degree(v);
+			if (inDegree[v] == 0) {
+				order[tail[0]++] = v;
+			}
+		}
 
-		edges.asMap().entrySet().stream()
-				.flatMap(entry -> entry.getValue().stream()
-						.map(val -> Pair.create(entry.getKey(), val))
-						.map(pair -> Pair.create(
-								nodeIdToVertexNum.get(pair.getKey()),
-								nodeIdToVertexNum.get(pair.getValue())
-						)))
-				.forEach(pair -> matrix.set(pair.getKey(), pair.getValue(), 1));
+		for (int head = 0; head < tail[0]; head++) {
+			children.forEachNeighbour(order[head], child -> {
+				if (--inDegree[child] == 0) {
+					order[tail[0]++] = child;
+				}
+			});
+		}
+
+		if (tail[0] != n) {
+			throw new IllegalArgumentException("Graph contains a cycle");
+		}
 
-		return new MatrixWrapper(matrix);
+		return order;
 	}
 
-	private static Map<Integer, Integer> assignVertexNumToNodes(List<INode> nodes) {
-		ImmutableMap.Builder<Integer, Integer> ids = ImmutableMap.builder();
+	/**
+	 * Tarjan's algorithm with an explicit stack, so deep graphs do not overflow the call stack.
+	 *
+	 * @return the component of every vertex, named after the first of its members the search reached. Components
+	 *     are completed, and so named, in reverse topological order of the condensation.
+	 */
+	public static int[] stronglyConnectedComponents(AdjacencyArrays children) {
+		int n = children.numVertices();
+		int[] component = new int[n];
+		int[] index = new int[n];
+		int[] lowLink = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int nextIndex = 0;
+
+		// the search path, with each vertex's children and how many of them have been visited
+		int[] pathVertices = new int[n];
+		int[][] pathChildren = new int[n][];
+		int[] pathNext = new int[n];
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+
+			int depth = 0;
+			pathVertices[0] = root;
+			pathChildren[0] = children.neighbours(root);
+			pathNext[0] = 0;
+			index[root] = lowLink[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+
+			while (depth >= 0) {
+				int v = pathVertices[depth];
+
+				if (pathNext[depth] < pathChildren[depth].length) {
+					int child = pathChildren[depth][pathNext[depth]++];
+
+					if (index[child] == -1) {
+						depth++;
+						pathVertices[depth] = child;
+						pathChildren[depth] = children.neighbours(child);
+						pathNext[depth] = 0;
+						index[child] = lowLink[child] = nextIndex++;
+						stack[stackSize++] = child;
+						onStack[child] = true;
+					} else if (onStack[child]) {
+						lowLink[v] = Math.min(lowLink[v], index[child]);
+					}
+					continue;
+				}
+
+				if (lowLink[v] == index[v]) {
+					int member;
+					do {
+						member = stack[--stackSize];
+						onStack[member] = false;
+						component[member] = v;
+					} while (member != v);
+				}
+
+				pathChildren[depth] = null;
+				depth--;
+				if (depth >= 0) {
+					int parent = pathVertices[depth];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+				}
+			}
+		}
+
+		return component;
+	}
+
+	/**
+	 * Vertex numbers are the positions of the nodes in the list, so they are dense.
+	 *
+	 * @throws IllegalArgumentException if two nodes share an id
+	 */
+	private static SegmentedIntIntMap assignVertexNumToNodes(List<INode> nodes) {
+		var ids = new SegmentedIntIntMap(nodes.size());
 
 		int count = 0;
 		for (var node : nodes) {
-			ids.put(node.getId(), count);
+			if (!ids.put(node.getId(), count)) {
+				throw new IllegalArgumentException(String.format("Multiple nodes with the given id: %d", node.getId()));
+			}
 			count++;
 		}
 
-		return ids.build();
+		return ids;
 	}
 
-	@VisibleForTesting
-	static class MatrixWrapper implements Matrix {
-
-		@VisibleForTesting
-		DMatrixSparseCSC matrix;
+	private static int getVertexNum(SegmentedIntIntMap nodeIdToVertexNum, int nodeId) {
+		int vertexNum = nodeIdToVertexNum.get(nodeId, -1);
 
-		private MatrixWrapper(DMatrixSparseCSC matrix) {
-			this.matrix = matrix;
+		if (vertexNum == -1) {
+			throw new NodeNotFoundException(nodeId);
 		}
 
-		@Override
-		public int get(int row, int col) {
-			return (int) matrix.get(row, col);
+		return vertexNum;
+	}
+
+	/**
+	 * Builds the rows of a range of vertices of one level, splitting the range in halves until it is small.
+	 */
+	private static class LevelTask extends RecursiveAction {
+
+		private static final int THRESHOLD = 64;
+
+		private final AdjacencyArrays neighbours;
+		private final RoaringBitmap[] rows;
+		private final int[] vertices;
+		private final int from;
+		private final int to;
+
+		private LevelTask(AdjacencyArrays neighbours, RoaringBitmap[] rows, int[] vertices, int from, int to) {
+			this.neighbours = neighbours;
+			this.rows = rows;
+			this.vertices = vertices;
+			this.from = from;
+			this.to = to;
 		}
 
 		@Override
-		public void set(int row, int col, int value) {
-			matrix.set(row, col, value);
+		protected void compute() {
+			if (to - from <= THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					rows[vertices[i]] = unionOfNeighbourhoods(neighbours, vertices[i], rows);
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(
+					new LevelTask(neighbours, rows, vertices, from, middle),
+					new LevelTask(neighbours, rows, vertices, middle, to));
 		}
 	}
 }
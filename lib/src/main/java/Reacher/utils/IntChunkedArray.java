@@ -0,0 +1,102 @@
+package Reacher.utils;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ChunkedArray} of primitive ints. {@link #fork()} copies only the chunk directory, and a chunk is copied the
+ * first time a copy writes to it.
+ */
+public class IntChunkedArray {
+
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	// never written to, since it is never owned
+	private static final int[] EMPTY_CHUNK = new int[CHUNK_SIZE];
+
+	private int length;
+	// the directory has spare capacity for growth; slots past the last used chunk are null
+	private int[][] chunks;
+	// chunks that no other copy can see, which may be written in place
+	private boolean[] ownedChunks;
+
+	public IntChunkedArray(int length) {
+		int numChunks = (length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+
+		this.length = length;
+		this.chunks = new int[numChunks][];
+		this.ownedChunks = new boolean[numChunks];
+
+		Arrays.fill(chunks, EMPTY_CHUNK);
+	}
+
+	private IntChunkedArray(int length, int[][] chunks) {
+		this.length = length;
+		this.chunks = chunks;
+		this.ownedChunks = new boolean[chunks.length];
+	}
+
+	public static IntChunkedArray of(int[] values) {
+		var array = new IntChunkedArray(values.length);
+
+		for (int c = 0; c < array.chunks.length; c++) {
+			int from = c << CHUNK_SHIFT;
+			array.chunks[c] = Arrays.copyOfRange(values, from, from + CHUNK_SIZE);
+			array.ownedChunks[c] = true;
+		}
+
+		return array;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public int get(int index) {
+		return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	public void set(int index, int value) {
+		int c = index >>> CHUNK_SHIFT;
+
+		if (!ownedChunks[c]) {
+			chunks[c] = chunks[c].clone();
+			ownedChunks[c] = true;
+		}
+
+		chunks[c][index & CHUNK_MASK] = value;
+	}
+
+	/**
+	 * Extends the array to the given length. New elements are 0. The chunk directory grows by doubling, so growing one
+	 * element at a time costs O(1) amortised.
+	 */
+	public void grow(int newLength) {
+		if (newLength <= length) {
+			return;
+		}
+
+		int usedChunks = (length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+		int numChunks = (newLength + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+
+		if (numChunks > chunks.length) {
+			int capacity = Math.max(numChunks, chunks.length << 1);
+			chunks = Arrays.copyOf(chunks, capacity);
+			ownedChunks = Arrays.copyOf(ownedChunks, capacity);
+		}
+
+		Arrays.fill(chunks, usedChunks, numChunks, EMPTY_CHUNK);
+
+		length = newLength;
+	}
+
+	/**
+	 * @return a copy that shares every chunk with this array. Neither array writes to a shared chunk afterwards,
+	 *     so the copy can be mutated while this array is being read.
+	 */
+	public IntChunkedArray fork() {
+		Arrays.fill(ownedChunks, false);
+		return new IntChunkedArray(length, chunks.clone());
+	}
+}
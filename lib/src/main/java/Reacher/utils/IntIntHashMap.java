@@ -0,0 +1,181 @@
+package Reacher.utils;
+
+/**
+ * An open-addressing hash map from int keys to int values that never boxes. Collisions are resolved by linear probing
+ * and removals shift the following entries back, so there are no tombstones.
+ */
+public class IntIntHashMap {
+
+	private static final int FREE_KEY = 0;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	// the free-slot marker cannot be stored in the table, so its mapping is kept on the side
+	private boolean hasFreeKey;
+	private int freeKeyValue;
+
+	public IntIntHashMap() {
+		this(16);
+	}
+
+	public IntIntHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	public IntIntHashMap copy() {
+		var copy = new IntIntHashMap(0);
+		copy.keys = keys.clone();
+		copy.values = values.clone();
+		copy.mask = mask;
+		copy.size = size;
+		copy.hasFreeKey = hasFreeKey;
+		copy.freeKeyValue = freeKeyValue;
+
+		return copy;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(int key) {
+		if (key == FREE_KEY) {
+			return hasFreeKey;
+		}
+
+		return keys[indexOf(key)] != FREE_KEY;
+	}
+
+	/**
+	 * @return the value mapped to the key, or {@code defaultValue} if there is none
+	 */
+	public int get(int key, int defaultValue) {
+		if (key == FREE_KEY) {
+			return hasFreeKey ? freeKeyValue : defaultValue;
+		}
+
+		int slot = indexOf(key);
+		return keys[slot] == FREE_KEY ? defaultValue : values[slot];
+	}
+
+	/**
+	 * @return false if the key was already mapped, in which case its value is replaced
+	 */
+	public boolean put(int key, int value) {
+		if (key == FREE_KEY) {
+			boolean added = !hasFreeKey;
+			hasFreeKey = true;
+			freeKeyValue = value;
+			size += added ? 1 : 0;
+			return added;
+		}
+
+		int slot = indexOf(key);
+		if (keys[slot] != FREE_KEY) {
+			values[slot] = value;
+			return false;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+
+		if (++size > keys.length * LOAD_FACTOR) {
+			rehash(keys.length << 1);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return false if the key was not mapped
+	 */
+	public boolean remove(int key) {
+		if (key == FREE_KEY) {
+			boolean removed = hasFreeKey;
+			hasFreeKey = false;
+			size -= removed ? 1 : 0;
+			return removed;
+		}
+
+		int slot = indexOf(key);
+		if (keys[slot] == FREE_KEY) {
+			return false;
+		}
+
+		// shift back every following entry of the probe run that would otherwise become unreachable
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (keys[next] != FREE_KEY) {
+			int home = hash(keys[next]);
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+
+		keys[gap] = FREE_KEY;
+		size--;
+		return true;
+	}
+
+	public void forEach(EntryConsumer consumer) {
+		if (hasFreeKey) {
+			consumer.accept(FREE_KEY, freeKeyValue);
+		}
+
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != FREE_KEY) {
+				consumer.accept(keys[slot], values[slot]);
+			}
+		}
+	}
+
+	/**
+	 * @return the slot holding the key, or the free slot where it would be inserted
+	 */
+	private int indexOf(int key) {
+		int slot = hash(key);
+
+		while (keys[slot] != FREE_KEY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE_KEY) {
+				int slot = indexOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(int key, int value);
+	}
+}
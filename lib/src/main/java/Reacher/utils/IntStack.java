@@ -0,0 +1,55 @@
+package Reacher.utils;
+
+import java.util.Arrays;
+
+/**
+ * A stack of ints that can be shared between copies. {@link #fork()} shares the backing array, and a copy only
+ * copies it the next time it pushes, since popping never writes to the array.
+ */
+public class IntStack {
+
+	private int[] elements;
+	private int size;
+	// whether no other copy can see the backing array
+	private boolean owned;
+
+	public IntStack() {
+		this(new int[8], 0);
+		this.owned = true;
+	}
+
+	private IntStack(int[] elements, int size) {
+		this.elements = elements;
+		this.size = size;
+	}
+
+	public IntStack fork() {
+		owned = false;
+		return new IntStack(elements, size);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void push(int value) {
+		if (!owned || size == elements.length) {
+			elements = Arrays.copyOf(elements, size == elements.length ? size << 1 : elements.length);
+			owned = true;
+		}
+
+		elements[size++] = value;
+	}
+
+	public int pop() {
+		if (size == 0) {
+			throw new IllegalStateException("Stack is empty");
+		}
+
+		return elements[--size];
+	}
+}
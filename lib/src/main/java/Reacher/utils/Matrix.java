@@ -1,6 +0,0 @@
-package Reacher.utils;
-
-public interface Matrix {
-	int get(int row, int col);
-	void set(int row, int col, int value);
-}
@@ -0,0 +1,124 @@
+package Reacher.utils;
+
+import java.util.BitSet;
+
+/**
+ * An int to int map split into {@link IntIntHashMap} segments by the high bits of the key's hash. {@link #fork()}
+ * copies only the segment directory, and a segment is copied the first time a fork writes to it. The number of
+ * segments doubles as the map grows, so a segment stays small enough to copy cheaply.
+ */
+public class SegmentedIntIntMap {
+
+	private static final int TARGET_SEGMENT_SIZE = 1024;
+
+	private int segmentBits;
+	private IntIntHashMap[] segments;
+	// segments that no other fork can see, which may be written in place
+	private BitSet ownedSegments;
+	private int size;
+
+	public SegmentedIntIntMap(int expectedSize) {
+		int numSegments = Math.max(1, Integer.highestOneBit(expectedSize / TARGET_SEGMENT_SIZE));
+
+		this.segmentBits = Integer.numberOfTrailingZeros(numSegments);
+		this.segments = new IntIntHashMap[numSegments];
+		this.ownedSegments = new BitSet(numSegments);
+
+		for (int s = 0; s < numSegments; s++) {
+			segments[s] = new IntIntHashMap(expectedSize / numSegments);
+		}
+		ownedSegments.set(0, numSegments);
+	}
+
+	private SegmentedIntIntMap(SegmentedIntIntMap other) {
+		this.segmentBits = other.segmentBits;
+		this.segments = other.segments.clone();
+		this.ownedSegments = new BitSet(segments.length);
+		this.size = other.size;
+	}
+
+	/**
+	 * @return a copy that shares every segment with this map. Neither map writes to a shared segment afterwards.
+	 */
+	public SegmentedIntIntMap fork() {
+		ownedSegments.clear();
+		return new SegmentedIntIntMap(this);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(int key) {
+		return segments[segmentOf(key)].containsKey(key);
+	}
+
+	/**
+	 * @return the value mapped to the key, or {@code defaultValue} if there is none
+	 */
+	public int get(int key, int defaultValue) {
+		return segments[segmentOf(key)].get(key, defaultValue);
+	}
+
+	/**
+	 * @return false if the key was already mapped, in which case its value is replaced
+	 */
+	public boolean put(int key, int value) {
+		boolean added = mutableSegment(key).put(key, value);
+		size += added ? 1 : 0;
+
+		if (size > 2 * TARGET_SEGMENT_SIZE * segments.length) {
+			split();
+		}
+
+		return added;
+	}
+
+	/**
+	 * @return false if the key was not mapped
+	 */
+	public boolean remove(int key) {
+		boolean removed = mutableSegment(key).remove(key);
+		size -= removed ? 1 : 0;
+
+		return removed;
+	}
+
+	/**
+	 * Doubles the number of segments. Segment s is split into 2s and 2s + 1 by the next bit of the hash, so the
+	 * cost is O(size), amortised over the puts that filled the map.
+	 */
+	private void split() {
+		int numSegments = segments.length << 1;
+		var newSegments = new IntIntHashMap[numSegments];
+
+		for (int s = 0; s < numSegments; s++) {
+			newSegments[s] = new IntIntHashMap(TARGET_SEGMENT_SIZE);
+		}
+
+		segmentBits++;
+		for (var segment : segments) {
+			segment.forEach((key, value) -> newSegments[segmentOf(key)].put(key, value));
+		}
+
+		segments = newSegments;
+		ownedSegments = new BitSet(numSegments);
+		ownedSegments.set(0, numSegments);
+	}
+
+	private IntIntHashMap mutableSegment(int key) {
+		int s = segmentOf(key);
+
+		if (!ownedSegments.get(s)) {
+			segments[s] = segments[s].copy();
+			ownedSegments.set(s);
+		}
+
+		return segments[s];
+	}
+
+	private int segmentOf(int key) {
+		// IntIntHashMap probes with the low bits of the same hash, so the segment uses the high bits
+		return segmentBits == 0 ? 0 : (key * 0x9E3779B9) >>> (32 - segmentBits);
+	}
+}
@@ -0,0 +1,139 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import Reacher.domain.Node;
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphSnapshotTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testReadReturnsAnEqualGraphWithAndWithoutTheReachabilityIndex() throws IOException {
+		Graph graph = randomGraph(300, new Random(17));
+
+		for (boolean includeReachabilityIndex : new boolean[]{true, false}) {
+			Path file = tempDir.resolve("graph-" + includeReachabilityIndex + ".bin");
+			GraphSnapshot.write(graph, file, includeReachabilityIndex);
+			Graph read = GraphSnapshot.read(file);
+
+			assertEquals(ids(graph.getNodes()), ids(read.getNodes()));
+			assertEquals(graph.getEdges(), read.getEdges());
+			for (INode node : graph.getNodes()) {
+				assertEquals(ids(graph.getDescendants(node.getId())), ids(read.getDescendants(node.getId())));
+				assertEquals(ids(graph.getAncestors(node.getId())), ids(read.getAncestors(node.getId())));
+			}
+		}
+	}
+
+	@Test
+	public void testReadKeepsAGraphThatAllowsCycles() throws IOException {
+		Graph graph = Graph.builder()
+				.addNode(new Node(1))
+				.addNode(new Node(2))
+				.addNode(new Node(3))
+				.addEdge(1, 2)
+				.addEdge(2, 1)
+				.addEdge(2, 3)
+				.allowCycles()
+				.build();
+
+		Path file = tempDir.resolve("graph.bin");
+		GraphSnapshot.write(graph, file);
+		Graph read = GraphSnapshot.read(file);
+
+		assertTrue(read.doesPathExist(2, 1));
+		assertEquals(ImmutableList.of(2, 3), ids(read.getDescendants(1)));
+		read.addEdge(3, 1);
+		assertTrue(read.doesPathExist(3, 2));
+	}
+
+	@Test
+	public void testReadKeepsTwoHopLabels() throws IOException {
+		Graph graph = Graph.builder()
+				.addNode(new Node(1))
+				.addNode(new Node(2))
+				.addNode(new Node(3))
+				.addEdge(1, 2)
+				.addEdge(2, 3)
+				.reachabilityBackend(ReachabilityBackend.TWO_HOP_LABELS)
+				.build();
+
+		Path file = tempDir.resolve("graph.bin");
+		GraphSnapshot.write(graph, file);
+		Graph read = GraphSnapshot.read(file);
+
+		assertTrue(read.doesPathExist(1, 3));
+		assertEquals(ImmutableList.of(2, 3), ids(read.getDescendants(1)));
+		assertEquals(graph.reachabilityIndexBytes(), read.reachabilityIndexBytes());
+	}
+
+	@Test
+	public void testReadCompactsVertexNumbersOfRemovedNodes() throws IOException {
+		Graph graph = Graph.builder()
+				.addNode(new Node(-7))
+				.addNode(new Node(100))
+				.addNode(new Node(3))
+				.addEdge(-7, 100)
+				.addEdge(100, 3)
+				.build();
+		graph.removeNode(3);
+		graph.addNode(new Node(Integer.MAX_VALUE));
+		graph.addEdge(-7, Integer.MAX_VALUE);
+
+		Path file = tempDir.resolve("graph.bin");
+		GraphSnapshot.write(graph, file);
+		Graph read = GraphSnapshot.read(file);
+
+		assertEquals(ImmutableList.of(-7, 100, Integer.MAX_VALUE), ids(read.getNodes()));
+		assertEquals(graph.getEdges(), read.getEdges());
+		assertArrayEquals(new int[]{100, Integer.MAX_VALUE}, read.descendantIds(-7).toArray());
+
+		read.addEdge(100, Integer.MAX_VALUE);
+		assertTrue(read.doesPathExist(100, Integer.MAX_VALUE));
+		assertFalse(graph.doesPathExist(100, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testReadRejectsFilesThatAreNotSnapshots() throws IOException {
+		Path file = tempDir.resolve("other.bin");
+		Files.write(file, new byte[64]);
+
+		assertThrows(IOException.class, () -> GraphSnapshot.read(file));
+	}
+
+	// nodes are loaded as new instances, so they are compared by id
+	private static List<Integer> ids(List<INode> nodes) {
+		return nodes.stream().map(INode::getId).collect(Collectors.toList());
+	}
+
+	private static Graph randomGraph(int n, Random random) {
+		var builder = Graph.builder();
+
+		for (int id = 0; id < n; id++) {
+			builder.addNode(new Node(id * 31));
+		}
+		for (int e = 0; e < 3 * n; e++) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+
+			if (from < to) {
+				builder.addEdge(from * 31, to * 31);
+			}
+		}
+
+		return builder.build();
+	}
+}
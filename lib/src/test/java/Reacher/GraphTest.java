@@ -1,13 +1,27 @@
 package Reacher;
 
 import Reacher.domain.INode;
+import Reacher.domain.Mutation;
 import Reacher.domain.Node;
+import Reacher.domain.exceptions.CycleDetectedException;
 import Reacher.domain.exceptions.NodeNotFoundException;
+import Reacher.service.IGraph;
+import Reacher.service.NodeIdCursor;
 import com.google.common.collect.ImmutableList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,6 +89,247 @@ public class GraphTest {
 		assertEquals(1000, exception.getNodeId());
 	}
 
+	@Test
+	public void testCountDescendantsAndAncestorsMatchTheLists() {
+		for (Node node : testNodes) {
+			assertEquals(testGraph.getDescendants(node.getId()).size(), testGraph.countDescendants(node.getId()));
+			assertEquals(testGraph.getAncestors(node.getId()).size(), testGraph.countAncestors(node.getId()));
+		}
+	}
+
+	@Test
+	public void testCountsFollowMutations() {
+		testGraph.removeEdge(3, 5);
+		assertEquals(4, testGraph.countDescendants(1));
+		assertEquals(1, testGraph.countDescendants(2));
+		assertEquals(2, testGraph.countAncestors(5));
+
+		testGraph.addNode(new Node(6));
+		testGraph.addEdge(5, 6);
+		assertEquals(5, testGraph.countDescendants(1));
+		assertEquals(3, testGraph.countAncestors(6));
+
+		testGraph.removeNode(6);
+		assertEquals(0, testGraph.countDescendants(5));
+		assertThrows(NodeNotFoundException.class, () -> testGraph.countAncestors(6));
+	}
+
+	@Test
+	public void testCountPathsCountsEveryRoute() {
+		assertEquals(2, testGraph.countPaths(1, 5));
+		assertEquals(1, testGraph.countPaths(2, 5));
+		assertEquals(0, testGraph.countPaths(5, 1));
+		assertEquals(0, testGraph.countPaths(1, 1));
+
+		testGraph.addEdge(1, 5);
+		assertEquals(3, testGraph.countPaths(1, 5));
+		testGraph.removeEdge(2, 3);
+		assertEquals(BigInteger.TWO, testGraph.countPathsExact(1, 5));
+	}
+
+	@Test
+	public void testAddEdgeThrowsCycleDetectedExceptionAndLeavesTheGraphUnchanged() {
+		var edges = testGraph.getEdges();
+
+		CycleDetectedException exception = assertThrows(CycleDetectedException.class, () -> testGraph.addEdge(5, 1));
+		assertEquals("Edge from 5 to 1 would create a cycle", exception.getMessage());
+		assertEquals(5, exception.getFromNodeId());
+		assertEquals(1, exception.getToNodeId());
+		assertThrows(CycleDetectedException.class, () -> testGraph.addEdge(3, 3));
+		assertThrows(CycleDetectedException.class,
+				() -> testGraph.applyBatch(List.of(Mutation.addEdge(4, 3), Mutation.addEdge(3, 4))));
+
+		assertEquals(edges, testGraph.getEdges());
+		assertFalse(testGraph.doesPathExist(5, 1));
+	}
+
+	@Test
+	public void testTopologicalOrderFollowsMutations() {
+		assertTopologicalOrder(testGraph);
+
+		testGraph.addNode(new Node(6));
+		testGraph.addEdge(6, 1);
+		testGraph.addEdge(4, 3);
+		testGraph.removeNode(2);
+		testGraph.addNode(new Node(7));
+		testGraph.addEdge(7, 6);
+		testGraph.applyBatch(List.of(Mutation.addNode(new Node(8)), Mutation.addEdge(8, 7)));
+
+		assertTopologicalOrder(testGraph);
+		assertEquals(8, testGraph.topologicalOrder().get(0).getId());
+	}
+
+	private static void assertTopologicalOrder(Graph graph) {
+		var order = graph.topologicalOrder().stream().map(INode::getId).collect(Collectors.toList());
+
+		assertEquals(graph.getNodes().size(), order.size());
+		graph.getEdges().forEach((from, to) -> assertTrue(order.indexOf(from) < order.indexOf(to)));
+	}
+
+	@Test
+	public void testGraphThatAllowsCyclesAnswersThroughComponents() {
+		var graph = Graph.builder()
+				.addNode(new Node(1)).addNode(new Node(2)).addNode(new Node(3)).addNode(new Node(4))
+				.addEdge(1, 2).addEdge(2, 3).addEdge(3, 1).addEdge(3, 4)
+				.allowCycles()
+				.build();
+
+		assertTrue(graph.doesPathExist(3, 2));
+		assertFalse(graph.doesPathExist(4, 1));
+		assertEquals(List.of(1, 3, 4), ids(graph.getDescendants(2)));
+		assertEquals(List.of(1, 2, 3), ids(graph.getAncestors(4)));
+
+		graph.addNode(new Node(5));
+		graph.addEdge(4, 5);
+		graph.addEdge(5, 2);
+		assertTrue(graph.doesPathExist(5, 4));
+		assertEquals(4, graph.countDescendants(1));
+
+		graph.removeEdge(3, 1);
+		assertTrue(graph.doesPathExist(1, 5));
+		assertFalse(graph.doesPathExist(2, 1));
+		assertEquals(List.of(1), ids(graph.getAncestors(2)).subList(0, 1));
+
+		graph.removeEdge(5, 2);
+		graph.removeNode(5);
+		assertEquals(List.of(2, 3, 4), ids(graph.getDescendants(1)));
+		assertFalse(graph.doesPathExist(4, 2));
+
+		assertThrows(UnsupportedOperationException.class, graph::topologicalOrder);
+		assertThrows(UnsupportedOperationException.class, () -> graph.countPaths(1, 4));
+	}
+
+	@Test
+	public void testBatchesOnAGraphThatAllowsCyclesRebuildTheCondensation() {
+		var builder = Graph.builder().allowCycles();
+		for (int id = 0; id < 10; id++) {
+			builder.addNode(new Node(id));
+		}
+		var graph = builder.build();
+
+		var mutations = new ArrayList<Mutation>();
+		for (int id = 0; id < 10; id++) {
+			mutations.add(Mutation.addEdge(id, (id + 1) % 10));
+		}
+		graph.applyBatch(mutations);
+
+		assertTrue(graph.doesPathExist(9, 0));
+		assertEquals(9, graph.countAncestors(0));
+	}
+
+	@Test
+	public void testRemoveNodeRemovesPathsThroughIt() {
+		var builders = List.of(
+				Graph.builder(),
+				Graph.builder().allowCycles(),
+				Graph.builder().reachabilityBackend(ReachabilityBackend.TWO_HOP_LABELS));
+
+		for (var builder : builders) {
+			var graph = builder
+					.addNode(new Node(1)).addNode(new Node(2)).addNode(new Node(3)).addNode(new Node(4)).addNode(new Node(5))
+					.addEdge(1, 2).addEdge(2, 3).addEdge(3, 4).addEdge(1, 5).addEdge(5, 4)
+					.build();
+
+			graph.removeNode(3);
+			assertFalse(graph.doesPathExist(2, 4));
+			assertTrue(graph.doesPathExist(1, 4));
+			assertEquals(List.of(2, 4, 5), ids(graph.getDescendants(1)));
+			assertEquals(List.of(1, 5), ids(graph.getAncestors(4)));
+
+			graph.removeNode(5);
+			assertFalse(graph.doesPathExist(1, 4));
+			assertEquals(List.of(2), ids(graph.getDescendants(1)));
+			assertEquals(0, graph.countAncestors(4));
+
+			// the new node takes a removed node's vertex number
+			graph.addNode(new Node(6));
+			assertFalse(graph.doesPathExist(1, 6));
+			assertFalse(graph.doesPathExist(6, 4));
+		}
+	}
+
+	@Test
+	public void testTwoHopLabelsAnswerLikeTheClosure() {
+		var graph = Graph.builder()
+				.addNode(new Node(1)).addNode(new Node(2)).addNode(new Node(3)).addNode(new Node(4))
+				.addEdge(1, 2).addEdge(1, 3).addEdge(3, 4)
+				.reachabilityBackend(ReachabilityBackend.TWO_HOP_LABELS)
+				.build();
+
+		assertTrue(graph.doesPathExist(1, 4));
+		assertFalse(graph.doesPathExist(2, 4));
+		assertEquals(List.of(2, 3, 4), ids(graph.getDescendants(1)));
+		assertThrows(CycleDetectedException.class, () -> graph.addEdge(4, 1));
+
+		graph.addNode(new Node(5));
+		graph.addEdge(2, 5);
+		graph.addEdge(4, 5);
+		assertEquals(List.of(1, 2, 3, 4), ids(graph.getAncestors(5)));
+		assertEquals(List.of(1), ids(graph.lowestCommonAncestors(2, 4)));
+
+		graph.removeEdge(1, 3);
+		assertFalse(graph.doesPathExist(1, 4));
+		assertTrue(graph.doesPathExist(1, 5));
+
+		graph.removeNode(2);
+		assertFalse(graph.doesPathExist(1, 5));
+		assertEquals(List.of(3, 4), ids(graph.getAncestors(5)));
+	}
+
+	@Test
+	public void testTwoHopLabelsCannotAllowCycles() {
+		assertThrows(IllegalArgumentException.class, () -> Graph.builder()
+				.reachabilityBackend(ReachabilityBackend.TWO_HOP_LABELS)
+				.allowCycles()
+				.build());
+	}
+
+	@Test
+	public void testLowestCommonAncestors() {
+		assertEquals(List.of(1), ids(testGraph.lowestCommonAncestors(3, 4)));
+		assertEquals(List.of(2), ids(testGraph.lowestCommonAncestors(2, 5)));
+		assertEquals(List.of(2), ids(testGraph.lowestCommonAncestors(5, 2)));
+		assertEquals(List.of(5), ids(testGraph.lowestCommonAncestors(5, 5)));
+
+		testGraph.addNode(new Node(6));
+		testGraph.addEdge(6, 3);
+		testGraph.addEdge(6, 4);
+		assertEquals(List.of(1, 6), ids(testGraph.lowestCommonAncestors(3, 4)));
+
+		testGraph.addNode(new Node(7));
+		assertTrue(testGraph.lowestCommonAncestors(5, 7).isEmpty());
+	}
+
+	@Test
+	public void testCommonDescendants() {
+		assertEquals(List.of(5), ids(testGraph.commonDescendants(3, 4)));
+		assertEquals(List.of(3, 5), ids(testGraph.commonDescendants(2, 3)));
+		assertEquals(List.of(5), ids(testGraph.commonDescendants(5, 1)));
+		assertEquals(List.of(2, 3, 5), ids(testGraph.commonDescendants(2, 2)));
+
+		testGraph.removeEdge(4, 5);
+		assertTrue(testGraph.commonDescendants(3, 4).isEmpty());
+	}
+
+	@Test
+	public void testBatchedCommonAncestorsAndDescendantsMatchSingleQueries() {
+		int[] as = {3, 2, 5, 1};
+		int[] bs = {4, 5, 1, 1};
+
+		var lowestCommonAncestors = testGraph.lowestCommonAncestors(as, bs);
+		var commonDescendants = testGraph.commonDescendants(as, bs);
+
+		for (int i = 0; i < as.length; i++) {
+			assertEquals(ids(testGraph.lowestCommonAncestors(as[i], bs[i])), ids(lowestCommonAncestors.get(i)));
+			assertEquals(ids(testGraph.commonDescendants(as[i], bs[i])), ids(commonDescendants.get(i)));
+		}
+		assertThrows(IllegalArgumentException.class, () -> testGraph.commonDescendants(new int[]{1}, new int[0]));
+	}
+
+	private static List<Integer> ids(List<INode> nodes) {
+		return nodes.stream().map(INode::getId).collect(Collectors.toList());
+	}
+
 	@Test
 	public void testDoesPathExistHappyPath() {
 		assertTrue(testGraph.doesPathExist(1, 5));
@@ -87,6 +342,20 @@ public class GraphTest {
 		assertFalse(testGraph.doesPathExist(3, 4));
 	}
 
+	@Test
+	public void testReachabilityFilterStatsCountNegativeProbes() {
+		assertFalse(testGraph.doesPathExist(5, 1));
+		assertFalse(testGraph.doesPathExist(3, 4));
+		assertTrue(testGraph.doesPathExist(1, 5));
+		testGraph.snapshot().doesPathExist(new int[]{4, 2}, new int[]{3, 5});
+
+		var stats = testGraph.getReachabilityFilterStats();
+		assertEquals(5, stats.probeCount());
+		assertEquals(3, stats.negativeCount());
+		assertTrue(stats.rejectionCount() >= 2);
+		assertEquals((double) stats.rejectionCount() / 3, stats.hitRate());
+	}
+
 	@Test
 	public void testDoesPathExistThrowsNotFoundExceptionWhenNodeWithIdDNE() {
 		NodeNotFoundException exception = assertThrows(NodeNotFoundException.class, () -> testGraph.doesPathExist(1000, 1000));
@@ -189,4 +458,321 @@ public class GraphTest {
 
 		assertEquals(expectedGraph, testGraph);
 	}
+
+	@Test
+	public void testRemoveEdgeHappyPath() {
+
+		var builder = new GraphBuilder();
+		testNodes.forEach(builder::addNode);
+
+		builder.addEdge(1, 2);
+		builder.addEdge(2, 3);
+		builder.addEdge(1, 4);
+		builder.addEdge(3, 5);
+
+		var expectedGraph = builder.build();
+
+		testGraph.removeEdge(4, 5);
+
+		assertFalse(testGraph.doesPathExist(4, 5));
+		// 1 still reaches 5 through 2 and 3
+		assertTrue(testGraph.doesPathExist(1, 5));
+		assertTrue(testGraph.getDescendants(4).isEmpty());
+
+		assertEquals(expectedGraph, testGraph);
+	}
+
+	@Test
+	public void testForEachDescendantVisitsEveryDescendantId() {
+		var ids = new ArrayList<Integer>();
+
+		testGraph.forEachDescendant(1, ids::add);
+
+		assertEquals(ImmutableList.of(2, 3, 4, 5), ids);
+	}
+
+	@Test
+	public void testForEachAncestorThrowsNotFoundExceptionWhenNodeWithIdDNE() {
+		NodeNotFoundException exception = assertThrows(NodeNotFoundException.class, () -> testGraph.forEachAncestor(1000, id -> {}));
+		assertEquals(1000, exception.getNodeId());
+	}
+
+	@Test
+	public void testDescendantCursorFillsCallerBufferInBatches() {
+		NodeIdCursor cursor = testGraph.descendantCursor(1);
+		int[] buffer = new int[3];
+
+		assertEquals(3, cursor.next(buffer));
+		assertArrayEquals(new int[]{2, 3, 4}, buffer);
+		assertEquals(1, cursor.next(buffer));
+		assertEquals(5, buffer[0]);
+		assertEquals(0, cursor.next(buffer));
+	}
+
+	@Test
+	public void testAncestorCursorIsNotAffectedByLaterMutations() {
+		testGraph.removeEdge(4, 5);
+		testGraph.removeEdge(3, 5);
+		testGraph.addEdge(5, 4);
+
+		NodeIdCursor cursor = testGraph.ancestorCursor(4);
+		testGraph.removeNode(5);
+
+		assertArrayEquals(new int[]{1, 5}, cursor.stream().toArray());
+		assertArrayEquals(new int[]{1}, testGraph.ancestorIds(4).toArray());
+	}
+
+	@Test
+	public void testDescendantIdsAndAncestorIdsAreLazyStreams() {
+		assertArrayEquals(new int[]{3, 5}, testGraph.descendantIds(2).toArray());
+		assertArrayEquals(new int[]{1, 2, 3, 4}, testGraph.ancestorIds(5).toArray());
+		assertEquals(2, testGraph.descendantIds(1).filter(id -> id > 3).count());
+		assertTrue(testGraph.ancestorIds(1).findAny().isEmpty());
+	}
+
+	@Test
+	public void testBatchDoesPathExistMatchesSingleProbes() {
+		int[] from = {5, 1, 1, 4, 3, 1};
+		int[] to = {1, 5, 2, 3, 4, 4};
+
+		BitSet result = testGraph.doesPathExist(from, to);
+
+		for (int i = 0; i < from.length; i++) {
+			assertEquals(testGraph.doesPathExist(from[i], to[i]), result.get(i));
+		}
+	}
+
+	@Test
+	public void testBatchDoesPathExistThrowsWhenLengthsDiffer() {
+		assertThrows(IllegalArgumentException.class, () -> testGraph.doesPathExist(new int[]{1, 2}, new int[]{3}));
+	}
+
+	@Test
+	public void testGetDescendantsOfAllReturnsUnionOnce() {
+		List<INode> descendants = testGraph.getDescendantsOfAll(new int[]{4, 2, 4});
+		List<INode> expected = ImmutableList.of(
+				testNodes.get(2),
+				testNodes.get(4)
+		);
+
+		assertEquals(expected, descendants);
+	}
+
+	@Test
+	public void testGetAncestorsOfAllReturnsUnionOnce() {
+		List<INode> ancestors = testGraph.getAncestorsOfAll(new int[]{3, 4});
+		List<INode> expected = ImmutableList.of(
+				testNodes.get(0),
+				testNodes.get(1)
+		);
+
+		assertEquals(expected, ancestors);
+	}
+
+	@Test
+	public void testGetAncestorsOfAllThrowsNotFoundExceptionWhenNodeWithIdDNE() {
+		NodeNotFoundException exception = assertThrows(NodeNotFoundException.class, () -> testGraph.getAncestorsOfAll(new int[]{3, 1000}));
+		assertEquals(1000, exception.getNodeId());
+	}
+
+	@Test
+	public void testSnapshotDoesNotSeeLaterMutations() {
+		IGraph snapshot = testGraph.snapshot();
+
+		testGraph.addEdge(2, 4);
+		testGraph.removeNode(5);
+
+		assertFalse(snapshot.doesPathExist(2, 4));
+		assertTrue(snapshot.getNode(5).isPresent());
+		assertEquals(4, snapshot.getAncestors(5).size());
+
+		assertTrue(testGraph.doesPathExist(2, 4));
+		assertTrue(testGraph.getNode(5).isEmpty());
+	}
+
+	@Test
+	public void testSnapshotIsReadOnly() {
+		IGraph snapshot = testGraph.snapshot();
+
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.addEdge(2, 4));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.removeEdge(1, 2));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.removeNode(5));
+		assertEquals(testGraph, snapshot);
+	}
+
+	@Test
+	public void testAddNodeHappyPath() {
+		var node = new Node(6);
+
+		testGraph.addNode(node);
+		testGraph.addEdge(5, 6);
+
+		assertEquals(Optional.of(node), testGraph.getNode(6));
+		assertArrayEquals(new int[]{1, 2, 3, 4, 5}, testGraph.ancestorIds(6).toArray());
+		assertTrue(testGraph.doesPathExist(1, 6));
+	}
+
+	@Test
+	public void testAddNodeThrowsWhenNodeWithIdExists() {
+		assertThrows(IllegalArgumentException.class, () -> testGraph.addNode(new Node(3)));
+	}
+
+	@Test
+	public void testAddNodeReusesVertexNumberOfRemovedNode() {
+		testGraph.removeNode(5);
+		testGraph.addNode(new Node(6));
+		testGraph.addEdge(4, 6);
+
+		assertEquals(ImmutableList.of(1, 2, 3, 4, 6), testGraph.getNodes().stream().map(INode::getId).collect(Collectors.toList()));
+		assertArrayEquals(new int[]{1, 4}, testGraph.ancestorIds(6).toArray());
+		assertArrayEquals(new int[]{3}, testGraph.descendantIds(2).toArray());
+	}
+
+	@Test
+	public void testAddNodeGrowsPastChunkBoundaries() {
+		int numAdded = 3000;
+
+		for (int id = 6; id < 6 + numAdded; id++) {
+			testGraph.addNode(new Node(id));
+			testGraph.addEdge(id - 1, id);
+		}
+
+		int last = 5 + numAdded;
+		assertEquals(5 + numAdded, testGraph.getNodes().size());
+		assertEquals(last - 1, testGraph.getAncestors(last).size());
+		assertTrue(testGraph.doesPathExist(1, last));
+		assertFalse(testGraph.doesPathExist(last, 1));
+	}
+
+	@Test
+	public void testGraphBuiltOnAWrittenReachabilityIndexAnswersTheSameQueries(@TempDir Path tempDir) throws IOException {
+		testGraph.addEdge(2, 4);
+		testGraph.removeNode(3);
+
+		Path file = tempDir.resolve("reachability.bin");
+		testGraph.writeReachabilityIndex(file);
+		Graph mapped = testGraph.toBuilder().reachabilityIndexFile(file).build();
+
+		assertEquals(testGraph, mapped);
+		for (INode node : testGraph.getNodes()) {
+			assertEquals(testGraph.getDescendants(node.getId()), mapped.getDescendants(node.getId()));
+			assertEquals(testGraph.getAncestors(node.getId()), mapped.getAncestors(node.getId()));
+		}
+
+		assertEquals(testGraph.countDescendants(1), mapped.countDescendants(1));
+		assertEquals(testGraph.countAncestors(5), mapped.countAncestors(5));
+
+		mapped.removeEdge(2, 4);
+		assertArrayEquals(new int[]{1}, mapped.ancestorIds(4).toArray());
+		assertTrue(testGraph.doesPathExist(2, 4));
+	}
+
+	@Test
+	public void testToBuilderKeepsTheBuildOptions(@TempDir Path tempDir) throws IOException {
+		var cyclic = Graph.builder()
+				.addNode(new Node(1)).addNode(new Node(2))
+				.addEdge(1, 2).addEdge(2, 1)
+				.allowCycles()
+				.resultCacheSize(100)
+				.build();
+		var rebuilt = cyclic.toBuilder().build();
+		assertTrue(rebuilt.doesPathExist(2, 1));
+		assertTrue(rebuilt.getResultCacheStats().isPresent());
+
+		var twoHop = testGraph.toBuilder().reachabilityBackend(ReachabilityBackend.TWO_HOP_LABELS).build();
+		assertEquals(twoHop.reachabilityIndexBytes(), twoHop.toBuilder().build().reachabilityIndexBytes());
+		assertEquals(twoHop.reachabilityIndexBytes(), ((Graph) twoHop.snapshot()).toBuilder().build().reachabilityIndexBytes());
+
+		// the index file is carried over only while it still matches the graph
+		Path file = tempDir.resolve("reachability.bin");
+		testGraph.writeReachabilityIndex(file);
+		var mapped = testGraph.toBuilder().reachabilityIndexFile(file).build();
+		assertEquals(testGraph, mapped.toBuilder().build());
+		mapped.addNode(new Node(100));
+		mapped.addEdge(5, 100);
+		var mutated = mapped.toBuilder().build();
+		assertTrue(mutated.doesPathExist(1, 100));
+	}
+
+	@Test
+	public void testApplyBatchMatchesSequentialMutations() {
+		Graph expected = testGraph.toBuilder().build();
+		expected.removeEdge(4, 5);
+		expected.addEdge(2, 4);
+		expected.addEdge(4, 5);
+		expected.removeNode(3);
+
+		testGraph.applyBatch(ImmutableList.of(
+				Mutation.removeEdge(4, 5),
+				Mutation.addEdge(2, 4),
+				Mutation.addEdge(4, 5),
+				Mutation.removeNode(3)
+		));
+
+		assertEquals(expected, testGraph);
+		assertArrayEquals(new int[]{4, 5}, testGraph.descendantIds(2).toArray());
+		assertArrayEquals(new int[]{1, 2, 4}, testGraph.ancestorIds(5).toArray());
+	}
+
+	@Test
+	public void testApplyBatchWithoutEdgeMutationsUpdatesClosureIncrementally() {
+		testGraph.applyBatch(ImmutableList.of(Mutation.removeNode(5)));
+
+		assertTrue(testGraph.getNode(5).isEmpty());
+		assertArrayEquals(new int[]{2, 3, 4}, testGraph.descendantIds(1).toArray());
+	}
+
+	@Test
+	public void testApplyBatchLeavesGraphUnchangedWhenAMutationFails() {
+		IGraph before = testGraph.snapshot();
+
+		NodeNotFoundException exception = assertThrows(NodeNotFoundException.class, () -> testGraph.applyBatch(ImmutableList.of(
+				Mutation.addEdge(2, 4),
+				Mutation.removeNode(5),
+				Mutation.addEdge(1, 1000)
+		)));
+
+		assertEquals(1000, exception.getNodeId());
+		assertEquals(before, testGraph);
+		assertFalse(testGraph.doesPathExist(2, 4));
+	}
+
+	@Test
+	public void testReadersSeeEitherTheOldOrTheNewVersionWhileWriting() throws Exception {
+		var stop = new AtomicBoolean();
+		var failure = new AtomicReference<Throwable>();
+
+		Runnable reader = () -> {
+			try {
+				while (!stop.get()) {
+					IGraph snapshot = testGraph.snapshot();
+					boolean edgePresent = snapshot.getChildren(2).size() == 2;
+
+					// within one snapshot the closure always agrees with the adjacency
+					assertEquals(edgePresent, snapshot.doesPathExist(2, 4));
+					assertEquals(edgePresent, snapshot.getAncestors(4).size() == 2);
+				}
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		};
+
+		var readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(reader);
+			readers[i].start();
+		}
+
+		for (int i = 0; i < 500; i++) {
+			testGraph.addEdge(2, 4);
+			testGraph.removeEdge(2, 4);
+		}
+
+		stop.set(true);
+		for (Thread thread : readers) {
+			thread.join();
+		}
+
+		assertNull(failure.get());
+	}
 }
@@ -0,0 +1,129 @@
+package Reacher;
+
+import Reacher.domain.Mutation;
+import Reacher.domain.Node;
+import Reacher.domain.exceptions.NodeNotFoundException;
+import Reacher.metrics.HistogramMetricsSink;
+import Reacher.metrics.JmxMetricsAdapter;
+import Reacher.metrics.Operation;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstrumentedGraphTest {
+
+	@Test
+	public void testCallsRecordLatencyAndResultSize() {
+		var sink = new HistogramMetricsSink();
+		var graph = new InstrumentedGraph(chain(4), sink);
+
+		assertEquals(3, graph.getDescendants(0).size());
+		assertEquals(1, graph.getDescendants(2).size());
+		assertTrue(graph.doesPathExist(0, 3));
+
+		assertEquals(2, sink.latency(Operation.GET_DESCENDANTS).getCount());
+		assertEquals(3, sink.resultSize(Operation.GET_DESCENDANTS).getMax());
+		assertEquals(2.0, sink.resultSize(Operation.GET_DESCENDANTS).getMean());
+		assertEquals(1, sink.latency(Operation.DOES_PATH_EXIST).getCount());
+		assertEquals(0, sink.latency(Operation.GET_ANCESTORS).getCount());
+	}
+
+	@Test
+	public void testCountPathsExactIsRecordedSeparately() {
+		var sink = new HistogramMetricsSink();
+		var graph = new InstrumentedGraph(chain(4), sink);
+
+		graph.countPaths(0, 3);
+		graph.countPathsExact(0, 3);
+		graph.countPathsExact(1, 3);
+
+		assertEquals(1, sink.latency(Operation.COUNT_PATHS).getCount());
+		assertEquals(2, sink.latency(Operation.COUNT_PATHS_EXACT).getCount());
+	}
+
+	@Test
+	public void testFailedCallsRecordLatencyButNoResultSize() {
+		var sink = new HistogramMetricsSink();
+		var graph = new InstrumentedGraph(chain(4), sink);
+
+		assertThrows(NodeNotFoundException.class, () -> graph.getDescendants(10));
+		assertThrows(NodeNotFoundException.class, () -> graph.addEdge(0, 10));
+
+		assertEquals(1, sink.latency(Operation.GET_DESCENDANTS).getCount());
+		assertEquals(0, sink.resultSize(Operation.GET_DESCENDANTS).getCount());
+		assertEquals(1, sink.latency(Operation.ADD_EDGE).getCount());
+	}
+
+	@Test
+	public void testMutationsRecordLockTimes() {
+		var sink = new HistogramMetricsSink();
+		Graph graph = chain(4);
+		var instrumented = new InstrumentedGraph(graph, sink);
+
+		instrumented.addNode(new Node(4));
+		instrumented.applyBatch(List.of(Mutation.addEdge(3, 4), Mutation.removeEdge(0, 1)));
+		graph.removeEdge(3, 4);
+
+		assertEquals(1, sink.latency(Operation.ADD_NODE).getCount());
+		assertEquals(1, sink.latency(Operation.APPLY_BATCH).getCount());
+		assertEquals(2, sink.resultSize(Operation.APPLY_BATCH).getMax());
+		assertEquals(3, sink.lockWait().getCount());
+		assertEquals(3, sink.lockHold().getCount());
+
+		InstrumentedGraph.uninstrument(graph);
+		graph.addEdge(0, 1);
+		assertEquals(3, sink.lockHold().getCount());
+	}
+
+	@Test
+	public void testSnapshotsAreInstrumented() {
+		var sink = new HistogramMetricsSink();
+		var snapshot = new InstrumentedGraph(chain(3), sink).snapshot();
+
+		snapshot.getAncestors(2);
+
+		assertEquals(1, sink.latency(Operation.SNAPSHOT).getCount());
+		assertEquals(1, sink.latency(Operation.GET_ANCESTORS).getCount());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.addNode(new Node(5)));
+	}
+
+	@Test
+	public void testJmxAdapterPublishesMetrics() throws JMException {
+		var sink = new HistogramMetricsSink();
+		Graph graph = chain(4);
+		var instrumented = new InstrumentedGraph(graph, sink);
+		instrumented.getAncestors(3);
+
+		String name = "Reacher:type=Graph,name=instrumentedGraphTest";
+		JmxMetricsAdapter.register(name, sink, graph);
+		try {
+			var server = ManagementFactory.getPlatformMBeanServer();
+			var objectName = new ObjectName(name);
+
+			assertEquals(1L, server.getAttribute(objectName, "getAncestors.count"));
+			assertEquals(3L, server.getAttribute(objectName, "getAncestors.maxResultSize"));
+			assertEquals(6L, server.getAttribute(objectName, "reachabilityIndex.pairs"));
+			assertTrue((Long) server.getAttribute(objectName, "reachabilityIndex.bytes") > 0);
+		} finally {
+			JmxMetricsAdapter.unregister(name);
+		}
+	}
+
+	private static Graph chain(int n) {
+		var builder = Graph.builder();
+
+		for (int id = 0; id < n; id++) {
+			builder.addNode(new Node(id));
+		}
+		for (int id = 0; id + 1 < n; id++) {
+			builder.addEdge(id, id + 1);
+		}
+
+		return builder.build();
+	}
+}
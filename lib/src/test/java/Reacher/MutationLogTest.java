@@ -0,0 +1,215 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import Reacher.domain.Mutation;
+import Reacher.domain.Node;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MutationLogTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testRecoverReplaysMutationsAfterTheCheckpoint() throws IOException {
+		Graph graph = chain(5);
+
+		try (var log = MutationLog.create(tempDir, graph)) {
+			assertSame(graph, log.getGraph());
+			graph.addNode(new Node(5));
+			graph.addEdge(4, 5);
+			graph.removeEdge(1, 2);
+			graph.applyBatch(List.of(Mutation.addNode(new Node(6)), Mutation.addEdge(0, 6), Mutation.removeNode(3)));
+		}
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertSameGraph(graph, recovered.getGraph());
+			assertFalse(recovered.getGraph().doesPathExist(0, 4));
+			assertTrue(recovered.getGraph().doesPathExist(4, 5));
+		}
+	}
+
+	@Test
+	public void testCheckpointDeletesCoveredSegments() throws IOException {
+		Graph graph = chain(100);
+
+		try (var log = MutationLog.create(tempDir, graph, 256, Integer.MAX_VALUE)) {
+			for (int i = 0; i < 50; i++) {
+				graph.removeEdge(i, i + 1);
+			}
+			assertTrue(files("segment-").size() > 1);
+
+			log.checkpoint();
+			graph.addEdge(0, 1);
+
+			assertEquals(1, files("checkpoint-").size());
+			assertEquals(1, files("segment-").size());
+		}
+
+		try (var recovered = MutationLog.recover(tempDir, 256, Integer.MAX_VALUE)) {
+			assertSameGraph(graph, recovered.getGraph());
+
+			recovered.getGraph().addEdge(1, 2);
+			assertTrue(recovered.getGraph().doesPathExist(0, 2));
+		}
+	}
+
+	@Test
+	public void testRecoverIgnoresATornRecord() throws IOException {
+		Graph graph = chain(3);
+
+		try (var log = MutationLog.create(tempDir, graph)) {
+			log.getGraph().removeEdge(0, 1);
+			log.getGraph().removeEdge(1, 2);
+		}
+
+		// corrupt the last byte of the second record's payload, as a write cut short by a crash would
+		Path segment = files("segment-").get(0);
+		try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			int recordSize = 8 + 12 + 9;
+			channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 2L * recordSize - 1);
+		}
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertFalse(recovered.getGraph().doesPathExist(0, 1));
+			assertTrue(recovered.getGraph().doesPathExist(1, 2));
+		}
+	}
+
+	@Test
+	public void testRecoverDoesNotReplayRecordsLeftOverFromATornSession() throws IOException {
+		Graph graph = chain(4);
+
+		try (var log = MutationLog.create(tempDir, graph)) {
+			log.getGraph().removeEdge(0, 1);
+			log.getGraph().removeEdge(1, 2);
+			log.getGraph().removeEdge(2, 3);
+		}
+
+		// tear the first record while the two after it reach the disk
+		Path segment = files("segment-").get(0);
+		try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			int recordSize = 8 + 12 + 9;
+			channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), recordSize - 1);
+		}
+
+		// the new session reuses the segment, and its first record has the size and sequence number of the torn one
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertTrue(recovered.getGraph().doesPathExist(0, 3));
+			recovered.getGraph().addNode(new Node(4));
+		}
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertTrue(recovered.getGraph().getNode(4).isPresent());
+			assertTrue(recovered.getGraph().doesPathExist(0, 3));
+		}
+	}
+
+	@Test
+	public void testRecoverAfterSessionsThatLoggedNothing() throws IOException {
+		Graph graph = chain(3);
+
+		MutationLog.create(tempDir, graph).close();
+		MutationLog.recover(tempDir).close();
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			recovered.getGraph().removeEdge(0, 1);
+		}
+		MutationLog.recover(tempDir).close();
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertFalse(recovered.getGraph().doesPathExist(0, 1));
+			assertTrue(recovered.getGraph().doesPathExist(1, 2));
+			// sessions that log nothing reuse the segment they opened
+			assertEquals(2, files("segment-").size());
+		}
+	}
+
+	@Test
+	public void testConcurrentWritersAreAllRecovered() throws Exception {
+		Graph graph = Graph.builder().build();
+		var threads = new ArrayList<Thread>();
+
+		try (var log = MutationLog.create(tempDir, graph, 4096, 150)) {
+			for (int t = 0; t < 4; t++) {
+				int first = t * 100;
+				threads.add(new Thread(() -> {
+					for (int id = first; id < first + 100; id++) {
+						log.getGraph().addNode(new Node(id));
+					}
+				}));
+			}
+			threads.forEach(Thread::start);
+			for (var thread : threads) {
+				thread.join();
+			}
+		}
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertEquals(400, recovered.getGraph().getNodes().size());
+			assertSameGraph(graph, recovered.getGraph());
+		}
+	}
+
+	@Test
+	public void testFailedMutationIsNotLogged() throws IOException {
+		Graph graph = chain(3);
+
+		try (var log = MutationLog.create(tempDir, graph)) {
+			assertThrows(IllegalArgumentException.class,
+					() -> log.getGraph().applyBatch(List.of(Mutation.addEdge(2, 0), Mutation.addNode(new Node(1)))));
+			log.getGraph().removeEdge(0, 1);
+		}
+
+		try (var recovered = MutationLog.recover(tempDir)) {
+			assertSameGraph(graph, recovered.getGraph());
+			assertFalse(recovered.getGraph().doesPathExist(2, 0));
+		}
+	}
+
+	private List<Path> files(String prefix) throws IOException {
+		try (var files = Files.list(tempDir)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+		}
+	}
+
+	// nodes are loaded as new instances, so they are compared by id
+	private static void assertSameGraph(Graph expected, Graph actual) {
+		assertEquals(ids(expected.getNodes()).stream().sorted().collect(Collectors.toList()),
+				ids(actual.getNodes()).stream().sorted().collect(Collectors.toList()));
+		assertEquals(expected.getEdges(), actual.getEdges());
+		for (INode node : expected.getNodes()) {
+			assertEquals(ids(expected.getDescendants(node.getId())), ids(actual.getDescendants(node.getId())));
+		}
+	}
+
+	private static List<Integer> ids(List<INode> nodes) {
+		return nodes.stream().map(INode::getId).collect(Collectors.toList());
+	}
+
+	private static Graph chain(int n) {
+		var builder = Graph.builder();
+
+		for (int id = 0; id < n; id++) {
+			builder.addNode(new Node(id));
+		}
+		for (int id = 0; id + 1 < n; id++) {
+			builder.addEdge(id, id + 1);
+		}
+
+		return builder.build();
+	}
+}
@@ -0,0 +1,112 @@
+package Reacher;
+
+import Reacher.domain.INode;
+import Reacher.domain.Mutation;
+import Reacher.domain.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTest {
+
+	@Test
+	public void testRepeatedQueriesHitTheCache() {
+		Graph graph = twoChains().resultCacheSize(1000).build();
+
+		var first = graph.getDescendants(0);
+		assertSame(first, graph.getDescendants(0));
+		graph.getAncestors(12);
+
+		var stats = graph.getResultCacheStats().orElseThrow();
+		assertEquals(1, stats.hitCount());
+		assertEquals(2, stats.missCount());
+	}
+
+	@Test
+	public void testAddEdgeOnlyInvalidatesAffectedLists() {
+		Graph graph = twoChains().resultCacheSize(1000).build();
+
+		// chain 0 -> 1 -> 2 and chain 10 -> 11 -> 12
+		var unaffectedDescendants = graph.getDescendants(10);
+		var unaffectedAncestors = graph.getAncestors(1);
+		graph.getDescendants(0);
+		graph.getAncestors(12);
+
+		graph.addEdge(1, 11);
+
+		assertSame(unaffectedDescendants, graph.getDescendants(10));
+		assertSame(unaffectedAncestors, graph.getAncestors(1));
+		assertEquals(List.of(1, 2, 11, 12), ids(graph.getDescendants(0)));
+		assertEquals(List.of(0, 1, 10, 11), ids(graph.getAncestors(12)));
+	}
+
+	@Test
+	public void testRemovalsInvalidateAffectedLists() {
+		Graph graph = twoChains().resultCacheSize(1000).build();
+		graph.addEdge(1, 11);
+
+		assertEquals(List.of(1, 2, 11, 12), ids(graph.getDescendants(0)));
+		graph.removeEdge(1, 11);
+		assertEquals(List.of(1, 2), ids(graph.getDescendants(0)));
+
+		assertEquals(List.of(10, 11), ids(graph.getAncestors(12)));
+		graph.removeNode(12);
+		assertEquals(List.of(11), ids(graph.getDescendants(10)));
+	}
+
+	@Test
+	public void testBatchesThatRebuildTheIndexInvalidateEverything() {
+		Graph graph = twoChains().resultCacheSize(1000).build();
+		graph.getDescendants(0);
+		graph.getDescendants(10);
+
+		graph.applyBatch(List.of(Mutation.addEdge(2, 10), Mutation.addNode(new Node(20)), Mutation.addEdge(12, 20)));
+
+		assertEquals(List.of(1, 2, 10, 11, 12, 20), ids(graph.getDescendants(0)));
+		assertEquals(List.of(11, 12, 20), ids(graph.getDescendants(10)));
+	}
+
+	@Test
+	public void testCacheIsBoundedByResultSize() {
+		var builder = Graph.builder();
+		for (int id = 0; id < 100; id++) {
+			builder.addNode(new Node(id));
+		}
+		for (int id = 0; id + 1 < 100; id++) {
+			builder.addEdge(id, id + 1);
+		}
+		Graph graph = builder.resultCacheSize(150).build();
+
+		for (int id = 0; id < 10; id++) {
+			graph.getDescendants(id);
+		}
+
+		assertTrue(graph.getResultCacheStats().orElseThrow().evictionCount() > 0);
+	}
+
+	@Test
+	public void testGraphsWithoutACacheReportNoStats() {
+		assertTrue(twoChains().build().getResultCacheStats().isEmpty());
+	}
+
+	private static GraphBuilder twoChains() {
+		var builder = Graph.builder();
+
+		for (int start : new int[]{0, 10}) {
+			for (int id = start; id < start + 3; id++) {
+				builder.addNode(new Node(id));
+			}
+			builder.addEdge(start, start + 1);
+			builder.addEdge(start + 1, start + 2);
+		}
+
+		return builder;
+	}
+
+	private static List<Integer> ids(List<INode> nodes) {
+		return nodes.stream().map(INode::getId).sorted().collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,69 @@
+package Reacher.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdjacencyArraysTest {
+
+	@Test
+	public void testFromEdgesSortsAndDedupesNeighbours() {
+		int[] sources = {0, 0, 0, 2, 0};
+		int[] targets = {3, 1, 2, 3, 1};
+
+		var adjacency = AdjacencyArrays.fromEdges(4, sources, targets, sources.length);
+
+		assertArrayEquals(new int[]{1, 2, 3}, adjacency.neighbours(0));
+		assertArrayEquals(new int[]{}, adjacency.neighbours(1));
+		assertArrayEquals(new int[]{3}, adjacency.neighbours(2));
+		assertEquals(3, adjacency.degree(0));
+		assertTrue(adjacency.contains(0, 2));
+		assertFalse(adjacency.contains(2, 0));
+	}
+
+	@Test
+	public void testAddAndRemoveOnlyTouchTheGivenVertex() {
+		// spans several blocks
+		int n = 1000;
+		int[] sources = new int[n - 1];
+		int[] targets = new int[n - 1];
+		for (int v = 0; v < n - 1; v++) {
+			sources[v] = v;
+			targets[v] = v + 1;
+		}
+
+		var adjacency = AdjacencyArrays.fromEdges(n, sources, targets, n - 1);
+
+		assertTrue(adjacency.add(300, 999));
+		assertFalse(adjacency.add(300, 999));
+		assertArrayEquals(new int[]{301, 999}, adjacency.neighbours(300));
+		assertArrayEquals(new int[]{300}, adjacency.neighbours(299));
+		assertArrayEquals(new int[]{302}, adjacency.neighbours(301));
+
+		assertTrue(adjacency.remove(300, 301));
+		assertFalse(adjacency.remove(300, 301));
+		assertArrayEquals(new int[]{999}, adjacency.neighbours(300));
+
+		adjacency.removeAll(300);
+		assertEquals(0, adjacency.degree(300));
+		assertArrayEquals(new int[]{302}, adjacency.neighbours(301));
+		assertArrayEquals(new int[]{999}, adjacency.neighbours(998));
+	}
+
+	@Test
+	public void testGrowAddsVerticesWithoutNeighbours() {
+		var adjacency = AdjacencyArrays.fromEdges(3, new int[]{0, 1}, new int[]{1, 2}, 2);
+		var fork = adjacency.fork();
+
+		fork.grow(600);
+		assertTrue(fork.add(599, 0));
+		assertTrue(fork.add(2, 300));
+
+		assertEquals(600, fork.numVertices());
+		assertEquals(0, fork.degree(256));
+		assertArrayEquals(new int[]{0}, fork.neighbours(599));
+		assertArrayEquals(new int[]{300}, fork.neighbours(2));
+		assertEquals(3, adjacency.numVertices());
+		assertArrayEquals(new int[]{}, adjacency.neighbours(2));
+	}
+}
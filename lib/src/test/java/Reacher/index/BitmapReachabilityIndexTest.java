@@ -0,0 +1,241 @@
+package Reacher.index;
+
+import Reacher.utils.GraphUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BitmapReachabilityIndexTest {
+
+	@Test
+	public void testAddEdgeMatchesRebuildOnRandomGraphs() {
+		var random = new Random(11);
+		int n = 50;
+
+		for (int trial = 0; trial < 10; trial++) {
+			var sources = new ArrayList<Integer>();
+			var targets = new ArrayList<Integer>();
+			var index = build(n, sources, targets);
+
+			for (int e = 0; e < 3 * n; e++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				// only add edges from lower to higher vertex numbers so the graph stays acyclic
+				if (from < to) {
+					sources.add(from);
+					targets.add(to);
+					index.addEdge(from, to);
+				}
+			}
+
+			assertIndicesMatch(n, build(n, sources, targets), index);
+		}
+	}
+
+	@Test
+	public void testRemoveEdgeMatchesRebuildOnRandomGraphs() {
+		var random = new Random(13);
+		int n = 50;
+
+		for (int trial = 0; trial < 10; trial++) {
+			var sources = new ArrayList<Integer>();
+			var targets = new ArrayList<Integer>();
+
+			for (int e = 0; e < 3 * n; e++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				if (from < to) {
+					sources.add(from);
+					targets.add(to);
+				}
+			}
+
+			var index = build(n, sources, targets);
+
+			while (!sources.isEmpty()) {
+				int e = random.nextInt(sources.size());
+				int from = sources.remove(e);
+				int to = targets.remove(e);
+
+				// the same edge may have been drawn twice, in which case it is still present
+				if (!contains(sources, targets, from, to)) {
+					index.removeEdge(from, to, children(n, sources, targets));
+					assertIndicesMatch(n, build(n, sources, targets), index);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRemoveVertexMatchesRebuildOnRandomGraphs() {
+		var random = new Random(17);
+		int n = 50;
+
+		for (int trial = 0; trial < 10; trial++) {
+			var sources = new ArrayList<Integer>();
+			var targets = new ArrayList<Integer>();
+
+			for (int e = 0; e < 3 * n; e++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				if (from < to) {
+					sources.add(from);
+					targets.add(to);
+				}
+			}
+
+			var index = build(n, sources, targets);
+
+			for (int removals = 0; removals < n / 2; removals++) {
+				int vertex = random.nextInt(n);
+				for (int e = sources.size() - 1; e >= 0; e--) {
+					if (sources.get(e) == vertex || targets.get(e) == vertex) {
+						sources.remove(e);
+						targets.remove(e);
+					}
+				}
+
+				index.removeVertex(vertex, children(n, sources, targets));
+				assertIndicesMatch(n, build(n, sources, targets), index);
+			}
+		}
+	}
+
+	@Test
+	public void testRemoveEdgeKeepsPairsReachableThroughAnotherPath() {
+		int n = 4;
+		var sources = new ArrayList<>(List.of(0, 0, 1, 2));
+		var targets = new ArrayList<>(List.of(1, 2, 3, 3));
+		var index = build(n, sources, targets);
+
+		sources.remove(2);
+		targets.remove(2);
+		index.removeEdge(1, 3, children(n, sources, targets));
+
+		assertTrue(index.reaches(0, 3));
+		assertFalse(index.reaches(1, 3));
+		assertArrayEquals(new int[]{0, 2}, toArray(index.ancestorCursor(3)));
+	}
+
+	@Test
+	public void testAddEdgeDoesNotModifyForkedFrom() {
+		int n = 4;
+		var index = build(n, List.of(0, 2), List.of(1, 3));
+		var fork = index.fork();
+
+		fork.addEdge(1, 2);
+
+		assertFalse(index.reaches(0, 3));
+		assertTrue(fork.reaches(0, 3));
+		assertArrayEquals(new int[]{0, 1, 2}, toArray(fork.ancestorCursor(3)));
+		assertArrayEquals(new int[]{2}, toArray(index.ancestorCursor(3)));
+	}
+
+	@Test
+	public void testCommonDescendantsAndLowestCommonAncestorsMatchBruteForce() {
+		var random = new Random(17);
+		int n = 40;
+		var sources = new ArrayList<Integer>();
+		var targets = new ArrayList<Integer>();
+
+		for (int e = 0; e < 2 * n; e++) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+
+			if (from < to) {
+				sources.add(from);
+				targets.add(to);
+			}
+		}
+		var index = build(n, sources, targets);
+		var children = children(n, sources, targets);
+
+		for (int a = 0; a < n; a++) {
+			for (int b = 0; b < n; b++) {
+				var expectedCommonDescendants = new ArrayList<Integer>();
+				var expectedLowestCommonAncestors = new ArrayList<Integer>();
+				for (int v = 0; v < n; v++) {
+					if (index.reaches(a, v) && index.reaches(b, v)) {
+						expectedCommonDescendants.add(v);
+					}
+					if (isLowestCommonAncestor(index, n, v, a, b)) {
+						expectedLowestCommonAncestors.add(v);
+					}
+				}
+
+				var commonDescendants = new ArrayList<Integer>();
+				index.forEachCommonDescendant(a, b, commonDescendants::add);
+				var lowestCommonAncestors = new ArrayList<Integer>();
+				index.forEachLowestCommonAncestor(a, b, children, lowestCommonAncestors::add);
+
+				assertEquals(expectedCommonDescendants, commonDescendants);
+				assertEquals(expectedLowestCommonAncestors, lowestCommonAncestors);
+			}
+		}
+	}
+
+	private static boolean isLowestCommonAncestor(ReachabilityIndex index, int n, int v, int a, int b) {
+		if (!index.reaches(v, a) || !index.reaches(v, b)) {
+			return false;
+		}
+
+		for (int w = 0; w < n; w++) {
+			if (index.reaches(v, w) && index.reaches(w, a) && index.reaches(w, b)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static ReachabilityIndex build(int n, List<Integer> sources, List<Integer> targets) {
+		return GraphUtils.constructReachabilityIndex(children(n, sources, targets), children(n, targets, sources));
+	}
+
+	private static AdjacencyArrays children(int n, List<Integer> sources, List<Integer> targets) {
+		int[] s = sources.stream().mapToInt(Integer::intValue).toArray();
+		int[] t = targets.stream().mapToInt(Integer::intValue).toArray();
+
+		return AdjacencyArrays.fromEdges(n, s, t, s.length);
+	}
+
+	private static boolean contains(List<Integer> sources, List<Integer> targets, int from, int to) {
+		for (int e = 0; e < sources.size(); e++) {
+			if (sources.get(e) == from && targets.get(e) == to) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static void assertIndicesMatch(int n, ReachabilityIndex expected, ReachabilityIndex actual) {
+		for (int v = 0; v < n; v++) {
+			assertArrayEquals(toArray(expected.descendantCursor(v)), toArray(actual.descendantCursor(v)));
+			assertArrayEquals(toArray(expected.ancestorCursor(v)), toArray(actual.ancestorCursor(v)));
+		}
+	}
+
+	private static int[] toArray(VertexCursor cursor) {
+		var buffer = new int[16];
+		var result = new ArrayList<Integer>();
+
+		for (int fetched = cursor.next(buffer); fetched > 0; fetched = cursor.next(buffer)) {
+			for (int i = 0; i < fetched; i++) {
+				result.add(buffer[i]);
+			}
+		}
+
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,180 @@
+package Reacher.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CondensedReachabilityIndexTest {
+
+	@Test
+	public void testVerticesOfACycleReachEachOtherButNotThemselves() {
+		var children = children(4, new int[]{0, 1, 2, 2}, new int[]{1, 2, 0, 3});
+		var index = CondensedReachabilityIndex.build(children);
+
+		assertTrue(index.reaches(1, 0));
+		assertTrue(index.reaches(0, 3));
+		assertFalse(index.reaches(3, 0));
+		assertFalse(index.reaches(0, 0));
+		assertEquals(index.componentOf(0), index.componentOf(2));
+		assertNotEquals(index.componentOf(0), index.componentOf(3));
+		assertArrayEquals(new int[]{0, 2, 3}, descendants(index, 1));
+		assertEquals(3, index.countDescendants(1));
+		assertEquals(3, index.countAncestors(3));
+		assertEquals(9, index.numPairs());
+	}
+
+	@Test
+	public void testAddEdgeContractsTheComponentsOnTheCycle() {
+		var children = children(4, new int[]{0, 1, 2}, new int[]{1, 2, 3});
+		var index = CondensedReachabilityIndex.build(children);
+
+		children.add(2, 0);
+		index.addEdge(2, 0);
+
+		assertTrue(index.reaches(2, 0));
+		assertTrue(index.reaches(1, 0));
+		assertFalse(index.reaches(3, 1));
+		assertEquals(index.componentOf(0), index.componentOf(1));
+		assertEquals(index.componentOf(0), index.componentOf(2));
+		assertArrayEquals(new int[]{0, 1, 2}, ancestors(index, 3));
+	}
+
+	@Test
+	public void testRemoveEdgeSplitsAComponentOnlyWhenItBreaksTheCycle() {
+		var children = children(3, new int[]{0, 1, 2, 0}, new int[]{1, 2, 0, 2});
+		var index = CondensedReachabilityIndex.build(children);
+
+		// 0 still reaches 2 directly
+		children.remove(1, 2);
+		index.removeEdge(1, 2, children);
+		assertTrue(index.reaches(0, 2));
+		assertTrue(index.reaches(2, 1));
+		assertFalse(index.reaches(1, 2));
+		assertNotEquals(index.componentOf(0), index.componentOf(1));
+		assertEquals(index.componentOf(0), index.componentOf(2));
+
+		children.remove(2, 0);
+		index.removeEdge(2, 0, children);
+		assertFalse(index.reaches(2, 0));
+		assertTrue(index.reaches(0, 1));
+		assertNotEquals(index.componentOf(0), index.componentOf(2));
+	}
+
+	@Test
+	public void testForkIsUnaffectedByContraction() {
+		var children = children(2, new int[]{0}, new int[]{1});
+		var index = CondensedReachabilityIndex.build(children);
+		var fork = index.fork();
+
+		fork.addEdge(1, 0);
+
+		assertTrue(fork.reaches(1, 0));
+		assertFalse(index.reaches(1, 0));
+		assertNotEquals(index.componentOf(0), index.componentOf(1));
+	}
+
+	@Test
+	public void testMutationsMatchBruteForceOnRandomGraphs() {
+		var random = new Random(19);
+		int n = 30;
+
+		for (int trial = 0; trial < 5; trial++) {
+			boolean[][] edges = new boolean[n][n];
+			var children = children(n, new int[0], new int[0]);
+			var index = CondensedReachabilityIndex.build(children);
+
+			for (int step = 0; step < 300; step++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				if (from == to) {
+					continue;
+				}
+				if (!edges[from][to]) {
+					edges[from][to] = true;
+					children.add(from, to);
+					index.addEdge(from, to);
+				} else if (random.nextInt(3) == 0) {
+					edges[from][to] = false;
+					children.remove(from, to);
+					index.removeEdge(from, to, children);
+				}
+
+				if (step % 25 == 0) {
+					assertMatchesBruteForce(n, edges, index);
+				}
+			}
+
+			assertMatchesBruteForce(n, edges, index);
+			assertMatchesBruteForce(n, edges, CondensedReachabilityIndex.build(children));
+		}
+	}
+
+	private static void assertMatchesBruteForce(int n, boolean[][] edges, ReachabilityIndex index) {
+		boolean[][] reaches = closure(n, edges);
+		long pairs = 0;
+
+		for (int from = 0; from < n; from++) {
+			var expectedDescendants = new ArrayList<Integer>();
+			var expectedAncestors = new ArrayList<Integer>();
+
+			for (int to = 0; to < n; to++) {
+				assertEquals(reaches[from][to], index.reaches(from, to));
+				if (reaches[from][to]) {
+					expectedDescendants.add(to);
+					pairs++;
+				}
+				if (reaches[to][from]) {
+					expectedAncestors.add(to);
+				}
+			}
+
+			assertArrayEquals(expectedDescendants.stream().mapToInt(Integer::intValue).toArray(), descendants(index, from));
+			assertArrayEquals(expectedAncestors.stream().mapToInt(Integer::intValue).toArray(), ancestors(index, from));
+			assertEquals(expectedDescendants.size(), index.countDescendants(from));
+			assertEquals(expectedAncestors.size(), index.countAncestors(from));
+		}
+
+		assertEquals(pairs, index.numPairs());
+	}
+
+	// a vertex never reaches itself, even on a cycle
+	private static boolean[][] closure(int n, boolean[][] edges) {
+		boolean[][] reaches = new boolean[n][];
+		for (int v = 0; v < n; v++) {
+			reaches[v] = edges[v].clone();
+		}
+
+		for (int k = 0; k < n; k++) {
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					reaches[i][j] |= reaches[i][k] && reaches[k][j];
+				}
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			reaches[v][v] = false;
+		}
+
+		return reaches;
+	}
+
+	private static AdjacencyArrays children(int n, int[] sources, int[] targets) {
+		return AdjacencyArrays.fromEdges(n, sources, targets, sources.length);
+	}
+
+	private static int[] descendants(ReachabilityIndex index, int vertex) {
+		var result = new ArrayList<Integer>();
+		index.forEachDescendant(vertex, result::add);
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static int[] ancestors(ReachabilityIndex index, int vertex) {
+		var result = new ArrayList<Integer>();
+		index.forEachAncestor(vertex, result::add);
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,80 @@
+package Reacher.index;
+
+import Reacher.utils.GraphUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReachabilityFilterTest {
+
+	@Test
+	public void testSecondOrderSeparatesUnrelatedVertices() {
+		// two chains, 0 -> 1 and 2 -> 3, ordered one after the other by the first order
+		var children = AdjacencyArrays.fromEdges(4, new int[]{0, 2}, new int[]{1, 3}, 2);
+		var parents = AdjacencyArrays.fromEdges(4, new int[]{1, 3}, new int[]{0, 2}, 2);
+		var filter = ReachabilityFilter.of(new int[]{0, 1, 2, 3}, children, parents);
+
+		assertTrue(filter.mayReach(0, 1));
+		assertTrue(filter.mayReach(2, 3));
+		assertFalse(filter.mayReach(1, 0));
+		assertFalse(filter.mayReach(0, 3));
+		assertFalse(filter.mayReach(1, 2));
+		assertFalse(filter.mayReach(2, 2));
+	}
+
+	@Test
+	public void testAddEdgeRejectsCyclesAndKeepsBothOrders() {
+		var children = AdjacencyArrays.fromEdges(3, new int[]{0}, new int[]{1}, 1);
+		var parents = AdjacencyArrays.fromEdges(3, new int[]{1}, new int[]{0}, 1);
+		var filter = ReachabilityFilter.of(new int[]{0, 1, 2}, children, parents);
+
+		assertFalse(filter.addEdge(1, 0, children, parents));
+		assertTrue(filter.addEdge(2, 0, children, parents));
+		children.add(2, 0);
+		parents.add(0, 2);
+
+		assertTrue(filter.mayReach(2, 1));
+		assertEquals(2, filter.topologicalOrder().vertexAt(0));
+	}
+
+	@Test
+	public void testNeverRejectsAReachablePairOnRandomGraphs() {
+		var random = new Random(23);
+		int n = 60;
+
+		for (int trial = 0; trial < 5; trial++) {
+			var children = AdjacencyArrays.fromEdges(n, new int[0], new int[0], 0);
+			var parents = AdjacencyArrays.fromEdges(n, new int[0], new int[0], 0);
+			var filter = ReachabilityFilter.of(GraphUtils.topologicalSort(children, parents), children, parents);
+
+			for (int e = 0; e < 2 * n; e++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				if (filter.addEdge(from, to, children, parents)) {
+					children.add(from, to);
+					parents.add(to, from);
+				}
+			}
+
+			var index = GraphUtils.constructReachabilityIndex(children, parents);
+			int negatives = 0;
+			int rejected = 0;
+			for (int from = 0; from < n; from++) {
+				for (int to = 0; to < n; to++) {
+					if (index.reaches(from, to)) {
+						assertTrue(filter.mayReach(from, to));
+					} else {
+						negatives++;
+						rejected += filter.mayReach(from, to) ? 0 : 1;
+					}
+				}
+			}
+
+			// one order alone rejects about half of the negatives
+			assertTrue(rejected > negatives / 2, rejected + " of " + negatives);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package Reacher.index;
+
+import Reacher.utils.GraphUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReachabilityIndexFileTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testMappedIndexMatchesTheIndexItWasWrittenFrom() throws IOException {
+		int n = 200;
+		var children = randomDag(n, new Random(5));
+		var index = GraphUtils.constructReachabilityIndex(children, transpose(children));
+
+		var file = tempDir.resolve("index.bin");
+		ReachabilityIndexFile.write(file, index, n, IntStream.range(0, n).toArray());
+		var mapped = BitmapReachabilityIndex.mapped(ReachabilityIndexFile.open(file));
+
+		for (int v = 0; v < n; v++) {
+			assertArrayEquals(toArray(index.descendantCursor(v)), toArray(mapped.descendantCursor(v)));
+			assertArrayEquals(toArray(index.ancestorCursor(v)), toArray(mapped.ancestorCursor(v)));
+		}
+	}
+
+	@Test
+	public void testMutationsOfAMappedIndexDoNotWriteToTheFile() throws IOException {
+		int n = 100;
+		var children = randomDag(n, new Random(9));
+		var expected = GraphUtils.constructReachabilityIndex(children, transpose(children));
+
+		var file = tempDir.resolve("index.bin");
+		ReachabilityIndexFile.write(file, expected, n, IntStream.range(0, n).toArray());
+		byte[] written = Files.readAllBytes(file);
+		var mapped = BitmapReachabilityIndex.mapped(ReachabilityIndexFile.open(file));
+
+		var random = new Random(3);
+		for (int i = 0; i < 50; i++) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+
+			if (from < to && !children.contains(from, to)) {
+				children.add(from, to);
+				expected.addEdge(from, to);
+				mapped.addEdge(from, to);
+			} else if (children.contains(from, to)) {
+				children.remove(from, to);
+				expected.removeEdge(from, to, children);
+				mapped.removeEdge(from, to, children);
+			}
+		}
+
+		for (int v = 0; v < n; v++) {
+			assertArrayEquals(toArray(expected.descendantCursor(v)), toArray(mapped.descendantCursor(v)));
+			assertArrayEquals(toArray(expected.ancestorCursor(v)), toArray(mapped.ancestorCursor(v)));
+		}
+		assertArrayEquals(written, Files.readAllBytes(file));
+	}
+
+	@Test
+	public void testWriteRenumbersTheGivenVertices() throws IOException {
+		var children = AdjacencyArrays.fromEdges(4, new int[]{0, 2}, new int[]{2, 3}, 2);
+		var index = GraphUtils.constructReachabilityIndex(children, transpose(children));
+
+		var file = tempDir.resolve("index.bin");
+		ReachabilityIndexFile.write(file, index, 4, new int[]{0, 2, 3});
+		var indexFile = ReachabilityIndexFile.open(file);
+
+		assertEquals(3, indexFile.numVertices());
+		assertArrayEquals(new int[]{1, 2}, indexFile.descendants(0).toArray());
+		assertArrayEquals(new int[]{0, 1}, indexFile.ancestors(2).toArray());
+	}
+
+	@Test
+	public void testOpenRejectsFilesThatAreNotIndices() throws IOException {
+		var file = tempDir.resolve("other.bin");
+		Files.write(file, new byte[64]);
+
+		assertThrows(IOException.class, () -> ReachabilityIndexFile.open(file));
+	}
+
+	private static AdjacencyArrays randomDag(int n, Random random) {
+		var sources = new ArrayList<Integer>();
+		var targets = new ArrayList<Integer>();
+
+		for (int e = 0; e < 3 * n; e++) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+
+			if (from < to) {
+				sources.add(from);
+				targets.add(to);
+			}
+		}
+
+		return AdjacencyArrays.fromEdges(n, toInts(sources), toInts(targets), sources.size());
+	}
+
+	private static AdjacencyArrays transpose(AdjacencyArrays children) {
+		var sources = new ArrayList<Integer>();
+		var targets = new ArrayList<Integer>();
+
+		for (int v = 0; v < children.numVertices(); v++) {
+			for (int child : children.neighbours(v)) {
+				sources.add(child);
+				targets.add(v);
+			}
+		}
+
+		return AdjacencyArrays.fromEdges(children.numVertices(), toInts(sources), toInts(targets), sources.size());
+	}
+
+	private static int[] toInts(List<Integer> values) {
+		return values.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static int[] toArray(VertexCursor cursor) {
+		var buffer = new int[16];
+		var result = new ArrayList<Integer>();
+
+		for (int fetched = cursor.next(buffer); fetched > 0; fetched = cursor.next(buffer)) {
+			for (int i = 0; i < fetched; i++) {
+				result.add(buffer[i]);
+			}
+		}
+
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,136 @@
+package Reacher.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopologicalOrderTest {
+
+	@Test
+	public void testForwardEdgeKeepsTheOrder() {
+		var order = TopologicalOrder.of(new int[]{0, 1, 2, 3});
+		var children = AdjacencyArrays.fromEdges(4, new int[0], new int[0], 0);
+		var parents = AdjacencyArrays.fromEdges(4, new int[0], new int[0], 0);
+
+		assertTrue(addEdge(order, 0, 3, children, parents));
+
+		for (int v = 0; v < 4; v++) {
+			assertEquals(v, order.position(v));
+			assertEquals(v, order.vertexAt(v));
+		}
+	}
+
+	@Test
+	public void testBackEdgeMovesOnlyTheAffectedVertices() {
+		var order = TopologicalOrder.of(new int[]{0, 1, 2, 3, 4});
+		var children = AdjacencyArrays.fromEdges(5, new int[0], new int[0], 0);
+		var parents = AdjacencyArrays.fromEdges(5, new int[0], new int[0], 0);
+		assertTrue(addEdge(order, 1, 2, children, parents));
+
+		assertTrue(addEdge(order, 3, 1, children, parents));
+
+		assertTrue(order.position(3) < order.position(1));
+		assertTrue(order.position(1) < order.position(2));
+		assertEquals(0, order.position(0));
+		assertEquals(4, order.position(4));
+		assertValid(order, children, 5);
+	}
+
+	@Test
+	public void testEdgeClosingACycleIsRejected() {
+		var order = TopologicalOrder.of(new int[]{0, 1, 2});
+		var children = AdjacencyArrays.fromEdges(3, new int[0], new int[0], 0);
+		var parents = AdjacencyArrays.fromEdges(3, new int[0], new int[0], 0);
+		assertTrue(addEdge(order, 0, 1, children, parents));
+		assertTrue(addEdge(order, 1, 2, children, parents));
+
+		assertFalse(order.addEdge(2, 0, children, parents));
+		assertFalse(order.addEdge(1, 1, children, parents));
+
+		for (int v = 0; v < 3; v++) {
+			assertEquals(v, order.position(v));
+		}
+	}
+
+	@Test
+	public void testForkIsUnaffectedByReordering() {
+		var order = TopologicalOrder.of(new int[]{0, 1});
+		var children = AdjacencyArrays.fromEdges(2, new int[0], new int[0], 0);
+		var parents = AdjacencyArrays.fromEdges(2, new int[0], new int[0], 0);
+		var fork = order.fork();
+
+		assertTrue(fork.addEdge(1, 0, children, parents));
+		fork.append(2);
+
+		assertEquals(0, order.position(0));
+		assertEquals(2, order.size());
+		assertEquals(1, fork.position(0));
+		assertEquals(3, fork.size());
+	}
+
+	@Test
+	public void testRandomEdgesKeepTheOrderValid() {
+		int n = 200;
+		var random = new Random(7);
+		var order = TopologicalOrder.of(new int[0]);
+		var children = AdjacencyArrays.fromEdges(0, new int[0], new int[0], 0);
+		var parents = AdjacencyArrays.fromEdges(0, new int[0], new int[0], 0);
+		children.grow(n);
+		parents.grow(n);
+		for (int v = 0; v < n; v++) {
+			order.append(v);
+		}
+
+		for (int e = 0; e < 2000; e++) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+			boolean closesCycle = from == to || reaches(children, to, from, n);
+
+			assertEquals(!closesCycle, addEdge(order, from, to, children, parents));
+		}
+
+		assertValid(order, children, n);
+	}
+
+	private static boolean addEdge(TopologicalOrder order, int from, int to, AdjacencyArrays children, AdjacencyArrays parents) {
+		if (!order.addEdge(from, to, children, parents)) {
+			return false;
+		}
+
+		children.add(from, to);
+		parents.add(to, from);
+		return true;
+	}
+
+	private static boolean reaches(AdjacencyArrays children, int from, int to, int n) {
+		var visited = new boolean[n];
+		var stack = new ArrayDeque<Integer>();
+		stack.push(from);
+
+		while (!stack.isEmpty()) {
+			int v = stack.pop();
+			if (v == to) {
+				return true;
+			}
+			if (!visited[v]) {
+				visited[v] = true;
+				children.forEachNeighbour(v, stack::push);
+			}
+		}
+
+		return false;
+	}
+
+	private static void assertValid(TopologicalOrder order, AdjacencyArrays children, int n) {
+		for (int p = 0; p < n; p++) {
+			assertEquals(p, order.position(order.vertexAt(p)));
+		}
+		for (int v = 0; v < n; v++) {
+			int from = v;
+			children.forEachNeighbour(v, to -> assertTrue(order.position(from) < order.position(to)));
+		}
+	}
+}
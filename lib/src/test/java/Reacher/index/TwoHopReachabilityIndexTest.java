@@ -0,0 +1,194 @@
+package Reacher.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TwoHopReachabilityIndexTest {
+
+	@Test
+	public void testLabelsAnswerReachabilityOfADiamond() {
+		var index = build(4, new int[]{0, 0, 1, 2}, new int[]{1, 2, 3, 3});
+
+		assertTrue(index.reaches(0, 3));
+		assertTrue(index.reaches(1, 3));
+		assertFalse(index.reaches(1, 2));
+		assertFalse(index.reaches(3, 0));
+		assertFalse(index.reaches(0, 0));
+		assertArrayEquals(new int[]{1, 2, 3}, descendants(index, 0));
+		assertArrayEquals(new int[]{0, 1, 2}, ancestors(index, 3));
+		assertEquals(5, index.numPairs());
+	}
+
+	@Test
+	public void testLabelsOfABowTieStaySmallerThanTheClosure() {
+		// k sources all reach one vertex, which reaches k sinks, so the closure has k * k + 2k pairs
+		int k = 500;
+		int hub = 2 * k;
+		int[] sources = new int[2 * k];
+		int[] targets = new int[2 * k];
+		for (int i = 0; i < k; i++) {
+			sources[i] = i;
+			targets[i] = hub;
+			sources[k + i] = hub;
+			targets[k + i] = k + i;
+		}
+		var index = build(2 * k + 1, sources, targets);
+
+		assertTrue(index.reaches(0, 2 * k - 1));
+		assertFalse(index.reaches(k, 0));
+		assertEquals((long) k * k + 2 * k, index.numPairs());
+		assertTrue(index.averageLabelSize() < 2);
+	}
+
+	@Test
+	public void testForkIsUnaffectedByAddEdge() {
+		var index = build(3, new int[]{0}, new int[]{1});
+		var fork = index.fork();
+
+		fork.addEdge(1, 2);
+
+		assertTrue(fork.reaches(0, 2));
+		assertFalse(index.reaches(0, 2));
+		assertArrayEquals(new int[]{1}, descendants(index, 0));
+	}
+
+	@Test
+	public void testAddVertexAfterRemoveVertexStartsUnconnected() {
+		var index = build(3, new int[]{0, 1}, new int[]{1, 2});
+
+		index.removeVertex(1, null);
+		assertFalse(index.reaches(0, 2));
+
+		index.addVertex(1);
+		index.addVertex(3);
+		index.addEdge(3, 1);
+		index.addEdge(1, 2);
+		assertTrue(index.reaches(3, 2));
+		assertFalse(index.reaches(0, 1));
+	}
+
+	@Test
+	public void testMutationsMatchBruteForceOnRandomDags() {
+		var random = new Random(23);
+		int n = 40;
+
+		for (int trial = 0; trial < 5; trial++) {
+			boolean[][] edges = new boolean[n][n];
+			var index = build(n, new int[0], new int[0]);
+
+			for (int step = 0; step < 400; step++) {
+				// edges only go from lower to higher vertex numbers, so the graph stays acyclic
+				int from = random.nextInt(n - 1);
+				int to = from + 1 + random.nextInt(n - from - 1);
+
+				if (!edges[from][to]) {
+					edges[from][to] = true;
+					index.addEdge(from, to);
+				} else if (random.nextInt(4) == 0) {
+					edges[from][to] = false;
+					index.removeEdge(from, to, null);
+				}
+
+				if (step % 40 == 0) {
+					assertMatchesBruteForce(n, edges, index);
+				}
+			}
+
+			assertMatchesBruteForce(n, edges, index);
+		}
+	}
+
+	@Test
+	public void testBuildMatchesBruteForceOnRandomDags() {
+		var random = new Random(29);
+		int n = 60;
+
+		for (int trial = 0; trial < 5; trial++) {
+			boolean[][] edges = new boolean[n][n];
+			var sources = new ArrayList<Integer>();
+			var targets = new ArrayList<Integer>();
+
+			for (int i = 0; i < 150; i++) {
+				int from = random.nextInt(n - 1);
+				int to = from + 1 + random.nextInt(n - from - 1);
+				if (!edges[from][to]) {
+					edges[from][to] = true;
+					sources.add(from);
+					targets.add(to);
+				}
+			}
+
+			var index = build(n,
+					sources.stream().mapToInt(Integer::intValue).toArray(),
+					targets.stream().mapToInt(Integer::intValue).toArray());
+			assertMatchesBruteForce(n, edges, index);
+		}
+	}
+
+	private static void assertMatchesBruteForce(int n, boolean[][] edges, TwoHopReachabilityIndex index) {
+		boolean[][] reaches = closure(n, edges);
+		long pairs = 0;
+
+		for (int from = 0; from < n; from++) {
+			var expectedDescendants = new ArrayList<Integer>();
+			var expectedAncestors = new ArrayList<Integer>();
+
+			for (int to = 0; to < n; to++) {
+				assertEquals(reaches[from][to], index.reaches(from, to));
+				if (reaches[from][to]) {
+					expectedDescendants.add(to);
+					pairs++;
+				}
+				if (reaches[to][from]) {
+					expectedAncestors.add(to);
+				}
+			}
+
+			assertArrayEquals(expectedDescendants.stream().mapToInt(Integer::intValue).toArray(), descendants(index, from));
+			assertArrayEquals(expectedAncestors.stream().mapToInt(Integer::intValue).toArray(), ancestors(index, from));
+			assertEquals(expectedDescendants.size(), index.countDescendants(from));
+			assertEquals(expectedAncestors.size(), index.countAncestors(from));
+		}
+
+		assertEquals(pairs, index.numPairs());
+	}
+
+	private static boolean[][] closure(int n, boolean[][] edges) {
+		boolean[][] reaches = new boolean[n][];
+		for (int v = 0; v < n; v++) {
+			reaches[v] = edges[v].clone();
+		}
+
+		for (int k = 0; k < n; k++) {
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					reaches[i][j] |= reaches[i][k] && reaches[k][j];
+				}
+			}
+		}
+
+		return reaches;
+	}
+
+	private static TwoHopReachabilityIndex build(int n, int[] sources, int[] targets) {
+		return TwoHopReachabilityIndex.build(
+				AdjacencyArrays.fromEdges(n, sources, targets, sources.length),
+				AdjacencyArrays.fromEdges(n, targets, sources, sources.length));
+	}
+
+	private static int[] descendants(ReachabilityIndex index, int vertex) {
+		var result = new ArrayList<Integer>();
+		index.forEachDescendant(vertex, result::add);
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private static int[] ancestors(ReachabilityIndex index, int vertex) {
+		var result = new ArrayList<Integer>();
+		index.forEachAncestor(vertex, result::add);
+		return result.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,63 @@
+package Reacher.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistogramTest {
+
+	@Test
+	public void testPercentilesAreWithinTheBucketPrecision() {
+		var histogram = new Histogram();
+
+		for (long value = 1; value <= 100_000; value++) {
+			histogram.record(value);
+		}
+
+		assertEquals(100_000, histogram.getCount());
+		assertEquals(100_000, histogram.getMax());
+		assertEquals(50_000.5, histogram.getMean(), 1e-9);
+
+		for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+			double expected = percentile * 1000;
+			long actual = histogram.getValueAtPercentile(percentile);
+
+			assertTrue(actual >= expected, percentile + ": " + actual);
+			assertTrue(actual <= expected * 1.04, percentile + ": " + actual);
+		}
+		assertEquals(100_000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		var histogram = new Histogram();
+
+		histogram.record(3);
+		histogram.record(3);
+		histogram.record(17);
+		histogram.record(-5);
+
+		assertEquals(0, histogram.getValueAtPercentile(25));
+		assertEquals(3, histogram.getValueAtPercentile(50));
+		assertEquals(17, histogram.getValueAtPercentile(100));
+		assertEquals(17, histogram.getMax());
+	}
+
+	@Test
+	public void testEmptyHistogramReportsZero() {
+		var histogram = new Histogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void testLargeValuesDoNotOverflowTheBuckets() {
+		var histogram = new Histogram();
+
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(50));
+	}
+}
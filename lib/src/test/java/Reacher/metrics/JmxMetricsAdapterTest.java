@@ -0,0 +1,39 @@
+package Reacher.metrics;
+
+import Reacher.Graph;
+import Reacher.GraphBuilder;
+import Reacher.ReachabilityBackend;
+import Reacher.domain.Node;
+import org.junit.jupiter.api.Test;
+
+import javax.management.AttributeNotFoundException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JmxMetricsAdapterTest {
+
+	@Test
+	public void testPairsArePublishedOnlyForTheClosure() throws Exception {
+		var closure = new JmxMetricsAdapter(new HistogramMetricsSink(), chain(Graph.builder()));
+		assertEquals(3L, closure.getAttribute("reachabilityIndex.pairs"));
+		assertTrue(hasAttribute(closure, "reachabilityIndex.pairs"));
+
+		var twoHop = new JmxMetricsAdapter(new HistogramMetricsSink(),
+				chain(Graph.builder().reachabilityBackend(ReachabilityBackend.TWO_HOP_LABELS)));
+		assertFalse(hasAttribute(twoHop, "reachabilityIndex.pairs"));
+		assertThrows(AttributeNotFoundException.class, () -> twoHop.getAttribute("reachabilityIndex.pairs"));
+		assertTrue((long) twoHop.getAttribute("reachabilityIndex.bytes") > 0);
+	}
+
+	private static boolean hasAttribute(JmxMetricsAdapter adapter, String name) {
+		return Arrays.stream(adapter.getMBeanInfo().getAttributes()).anyMatch(attribute -> attribute.getName().equals(name));
+	}
+
+	private static Graph chain(GraphBuilder builder) {
+		return builder
+				.addNode(new Node(1)).addNode(new Node(2)).addNode(new Node(3))
+				.addEdge(1, 2).addEdge(2, 3)
+				.build();
+	}
+}
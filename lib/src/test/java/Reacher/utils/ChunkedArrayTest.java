@@ -0,0 +1,69 @@
+package Reacher.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedArrayTest {
+
+	@Test
+	public void testOfCopiesEveryElement() {
+		Integer[] values = new Integer[3000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+
+		var array = ChunkedArray.of(values);
+
+		assertEquals(3000, array.length());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(i, array.get(i));
+		}
+	}
+
+	@Test
+	public void testWritesToAForkAreNotVisibleInTheOriginal() {
+		var original = ChunkedArray.of(new String[]{"a", "b", "c"});
+		var fork = original.fork();
+
+		fork.set(1, "x");
+		var forkOfFork = fork.fork();
+		forkOfFork.set(1, "y");
+		forkOfFork.set(2, "z");
+
+		assertEquals("b", original.get(1));
+		assertEquals("x", fork.get(1));
+		assertEquals("c", fork.get(2));
+		assertEquals("y", forkOfFork.get(1));
+		assertEquals("z", forkOfFork.get(2));
+	}
+
+	@Test
+	public void testWritesToTheOriginalAfterForkingAreNotVisibleInTheFork() {
+		var original = ChunkedArray.of(new String[]{"a", "b"});
+		var fork = original.fork();
+
+		original.set(0, "x");
+
+		assertEquals("a", fork.get(0));
+		assertEquals("x", original.get(0));
+	}
+
+	@Test
+	public void testGrowKeepsElementsAndDoesNotAffectForks() {
+		var original = ChunkedArray.of(new String[]{"a", "b"});
+		var fork = original.fork();
+
+		fork.grow(2500);
+		fork.set(2, "c");
+		fork.set(2499, "d");
+
+		assertEquals(2500, fork.length());
+		assertEquals("a", fork.get(0));
+		assertEquals("c", fork.get(2));
+		assertNull(fork.get(1500));
+		assertEquals("d", fork.get(2499));
+		assertEquals(2, original.length());
+		assertNull(original.fork().get(2));
+	}
+}
@@ -1,117 +1,232 @@
 package Reacher.utils;
 
 import Reacher.GraphBuilder;
+import Reacher.index.AdjacencyArrays;
+import Reacher.index.TopologicalOrder;
+import Reacher.index.TwoHopReachabilityIndex;
 import Reacher.domain.Node;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMultimap;
-import org.apache.commons.math3.util.Pair;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Multimap;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 
 import static Reacher.utils.GraphUtils.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class GraphUtilsTest {
 
 	@Test
-	public void testBuildIdentityMatrixHappyPath() {
+	public void testConstructReachabilityIndexMatchesPathCounts() {
+		var random = new Random(7);
+		int n = 60;
 
-		int n = 10;
-		var matrix = buildIdentityMatrix(n);
+		for (int trial = 0; trial < 10; trial++) {
+			var edges = ImmutableSetMultimap.<Integer, Integer>builder();
 
-		for (int i = 0; i < n; i++) {
-			for (int j = 0; j < n; j++) {
-				if (i == j) {
-					assertEquals(1, matrix.get(i, j));
-				} else {
-					assertEquals(0, matrix.get(i, j));
+			for (int e = 0; e < 2 * n; e++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				if (from < to) {
+					edges.put(from, to);
+				}
+			}
+
+			var edgeList = edges.build();
+			var pathCounts = countPathsInIncreasingOrder(n, edgeList);
+
+			int[] sources = edgeList.entries().stream().mapToInt(Map.Entry::getKey).toArray();
+			int[] targets = edgeList.entries().stream().mapToInt(Map.Entry::getValue).toArray();
+			var index = constructReachabilityIndex(
+					AdjacencyArrays.fromEdges(n, sources, targets, sources.length),
+					AdjacencyArrays.fromEdges(n, targets, sources, sources.length));
+
+			for (int row = 0; row < n; row++) {
+				for (int col = 0; col < n; col++) {
+					assertEquals(pathCounts[row][col] > 0, index.reaches(row, col));
 				}
 			}
 		}
 	}
 
 	@Test
-	public void testConstructAdjacencyMatrixHappyPath() {
-		var nodeIdToVertexNum = ImmutableMap.of(
-				1, 0,
-				2, 1,
-				3, 2,
-				4, 3,
-				5, 4
-		);
-
-		var edges = ImmutableMultimap.<Integer, Integer>builder()
-				.put(1, 2)
-				.put(2, 3)
-				.put(1, 4)
-				.put(3, 5)
-				.put(4, 5)
-				.build();
-
-		var matrix = constructAdjacencyMatrix(5, edges, nodeIdToVertexNum);
-
-		edges.forEach((fromNodeId, toNodeId) -> {
-			assertEquals(1, matrix.get(fromNodeId - 1, toNodeId - 1));
-			assertEquals(0, matrix.get(toNodeId - 1, fromNodeId - 1));
-		});
-
-		for (int i = 0; i < 5; i++) {
-			for (int j = 0; j < 5; j++) {
-				var fromNodeId = i + 1;
-				var toNodeId = j + 1;
-
-				if (Optional.ofNullable(edges.get(fromNodeId))
-						.map(toNodes -> toNodes.contains(toNodeId))
-								.orElse(false)) {
-
-					assertEquals(1, matrix.get(i, j));
-				} else {
-					assertEquals(0, matrix.get(i, j));
+	public void testCountPathsMatchesBruteForceCounts() {
+		var random = new Random(5);
+		int n = 40;
+
+		for (int trial = 0; trial < 5; trial++) {
+			var edges = ImmutableSetMultimap.<Integer, Integer>builder();
+			for (int e = 0; e < 3 * n; e++) {
+				int from = random.nextInt(n);
+				int to = random.nextInt(n);
+
+				if (from < to) {
+					edges.put(from, to);
+				}
+			}
+
+			var edgeList = edges.build();
+			var pathCounts = countPathsInIncreasingOrder(n, edgeList);
+
+			int[] sources = edgeList.entries().stream().mapToInt(Map.Entry::getKey).toArray();
+			int[] targets = edgeList.entries().stream().mapToInt(Map.Entry::getValue).toArray();
+			var children = AdjacencyArrays.fromEdges(n, sources, targets, sources.length);
+			var parents = AdjacencyArrays.fromEdges(n, targets, sources, sources.length);
+			var index = constructReachabilityIndex(children, parents);
+			var twoHop = TwoHopReachabilityIndex.build(children, parents);
+			var order = TopologicalOrder.of(topologicalSort(children, parents));
+
+			for (int from = 0; from < n; from++) {
+				for (int to = 0; to < n; to++) {
+					assertEquals(BigInteger.valueOf(pathCounts[from][to]), countPaths(index, children, order, from, to));
+					assertEquals(BigInteger.valueOf(pathCounts[from][to]), countPaths(twoHop, children, order, from, to));
 				}
 			}
 		}
 	}
 
-	/*@Test
-	public void testConstructReachabilityMatrixHappyPath() {
-		var nodeIdToVertexNum = ImmutableMap.of(
-				1, 0,
-				2, 1,
-				3, 2,
-				4, 3,
-				5, 4
-		);
-
-		var edges = ImmutableMultimap.<Integer, Integer>builder()
-				.put(1, 2)
-				.put(2, 3)
-				.put(1, 4)
-				.put(3, 5)
-				.put(4, 5)
-				.build();
-
-		var expectedResult = ImmutableMap.<Pair<Integer, Integer>, Integer>builder()
-				.put(Pair.create(1, 2), 1)
-				.put(Pair.create(2, 1), 0)
-				.put(Pair.create(1, 3), 1)
-				.put(Pair.create(3, 1), 0)
-				.put(Pair.create(1, 4), 1)
-				.put(Pair.create(4, 1), 0)
-				.put(Pair.create(0, 0), 0)
-
-				// TODO
-				.put(Pair.create(3, 5), 1)
-				.build();
-
-
-		var i = buildIdentityMatrix(5);
-		var a = constructAdjacencyMatrix(5, edges, nodeIdToVertexNum);
-
-		var matrix = constructReachabilityMatrix(((MatrixWrapper) a).matrix, ((MatrixWrapper) i).matrix);
-
-		expectedResult.forEach((key, val) -> assertEquals(val, matrix.get(key.getKey(), key.getValue())));
-
-	}*/
+	@Test
+	public void testCountPathsFallsBackToBigIntegerOnOverflow() {
+		// 70 diamonds in a row double the number of paths 70 times
+		int diamonds = 70;
+		int n = 3 * diamonds + 1;
+		int[] sources = new int[4 * diamonds];
+		int[] targets = new int[4 * diamonds];
+
+		for (int d = 0; d < diamonds; d++) {
+			int top = 3 * d;
+			int[][] diamond = {{top, top + 1}, {top, top + 2}, {top + 1, top + 3}, {top + 2, top + 3}};
+			for (int e = 0; e < 4; e++) {
+				sources[4 * d + e] = diamond[e][0];
+				targets[4 * d + e] = diamond[e][1];
+			}
+		}
+
+		var children = AdjacencyArrays.fromEdges(n, sources, targets, sources.length);
+		var parents = AdjacencyArrays.fromEdges(n, targets, sources, sources.length);
+		var index = constructReachabilityIndex(children, parents);
+		var order = TopologicalOrder.of(topologicalSort(children, parents));
+
+		assertEquals(BigInteger.TWO.pow(diamonds), countPaths(index, children, order, 0, n - 1));
+		assertEquals(BigInteger.TWO.pow(10), countPaths(index, children, order, 3 * 60, n - 1));
+
+		// 2-hop labels find the vertices between by a guided search instead
+		var twoHop = TwoHopReachabilityIndex.build(children, parents);
+		assertEquals(BigInteger.TWO.pow(diamonds), countPaths(twoHop, children, order, 0, n - 1));
+		assertEquals(BigInteger.TWO.pow(10), countPaths(twoHop, children, order, 3 * 60, n - 1));
+	}
+
+	@Test
+	public void testParallelConstructReachabilityIndexMatchesSequential() {
+		var random = new Random(11);
+		int n = 2000;
+
+		int m = 4 * n;
+		int[] sources = new int[m];
+		int[] targets = new int[m];
+		int e = 0;
+		while (e < m) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+
+			if (from < to) {
+				sources[e] = from;
+				targets[e] = to;
+				e++;
+			}
+		}
+
+		var children = AdjacencyArrays.fromEdges(n, sources, targets, m);
+		var parents = AdjacencyArrays.fromEdges(n, targets, sources, m);
+		var expected = constructReachabilityIndex(children, parents);
+		var actual = constructReachabilityIndex(children, parents, 4);
+
+		for (int v = 0; v < n; v++) {
+			var expectedDescendants = new ArrayList<Integer>();
+			var actualDescendants = new ArrayList<Integer>();
+			expected.forEachDescendant(v, expectedDescendants::add);
+			actual.forEachDescendant(v, actualDescendants::add);
+			assertEquals(expectedDescendants, actualDescendants);
+
+			var expectedAncestors = new ArrayList<Integer>();
+			var actualAncestors = new ArrayList<Integer>();
+			expected.forEachAncestor(v, expectedAncestors::add);
+			actual.forEachAncestor(v, actualAncestors::add);
+			assertEquals(expectedAncestors, actualAncestors);
+		}
+	}
+
+	@Test
+	public void testParallelConstructReachabilityIndexThrowsWhenGraphHasCycle() {
+		int[] sources = {0, 1, 2};
+		int[] targets = {1, 2, 0};
+
+		assertThrows(IllegalArgumentException.class, () -> constructReachabilityIndex(
+				AdjacencyArrays.fromEdges(3, sources, targets, 3),
+				AdjacencyArrays.fromEdges(3, targets, sources, 3),
+				4));
+	}
+
+	@Test
+	public void testStronglyConnectedComponentsGroupsEveryCycle() {
+		// 0 -> 1 -> 2 -> 0 and 3 <-> 4, joined by 2 -> 3, with 5 on its own
+		int[] sources = {0, 1, 2, 2, 3, 4};
+		int[] targets = {1, 2, 0, 3, 4, 3};
+
+		int[] component = stronglyConnectedComponents(AdjacencyArrays.fromEdges(6, sources, targets, sources.length));
+
+		assertEquals(component[0], component[1]);
+		assertEquals(component[0], component[2]);
+		assertEquals(component[3], component[4]);
+		assertNotEquals(component[0], component[3]);
+		assertEquals(5, component[5]);
+	}
+
+	@Test
+	public void testStronglyConnectedComponentsHandlesLongChainsWithoutRecursion() {
+		int n = 200_000;
+		int[] sources = new int[n];
+		int[] targets = new int[n];
+		for (int v = 0; v < n; v++) {
+			sources[v] = v;
+			targets[v] = (v + 1) % n;
+		}
+
+		int[] component = stronglyConnectedComponents(AdjacencyArrays.fromEdges(n, sources, targets, n));
+
+		for (int v = 0; v < n; v++) {
+			assertEquals(component[0], component[v]);
+		}
+	}
+
+	/**
+	 * Counts the paths between every pair of vertices of a graph whose edges all go from a lower to a higher vertex
+	 * number, so that increasing vertex order is already a topological order.
+	 */
+	private static long[][] countPathsInIncreasingOrder(int n, Multimap<Integer, Integer> edges) {
+		var pathCounts = new long[n][n];
+
+		for (int from = 0; from < n; from++) {
+			pathCounts[from][from] = 1;
+
+			for (int vertex = from; vertex < n; vertex++) {
+				for (int child : edges.get(vertex)) {
+					pathCounts[from][child] += pathCounts[from][vertex];
+				}
+			}
+
+			// the empty path is not counted, and a vertex never reaches itself in a DAG
+			pathCounts[from][from] = 0;
+		}
+
+		return pathCounts;
+	}
 }
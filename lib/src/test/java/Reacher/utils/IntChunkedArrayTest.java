@@ -0,0 +1,57 @@
+package Reacher.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntChunkedArrayTest {
+
+	@Test
+	public void testOfCopiesEveryElement() {
+		int[] values = new int[3000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+
+		var array = IntChunkedArray.of(values);
+
+		assertEquals(3000, array.length());
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(i, array.get(i));
+		}
+	}
+
+	@Test
+	public void testWritesToAForkAreNotVisibleInTheOriginal() {
+		var original = IntChunkedArray.of(new int[]{1, 2, 3});
+		var fork = original.fork();
+
+		fork.set(1, 10);
+		var forkOfFork = fork.fork();
+		forkOfFork.set(1, 20);
+		forkOfFork.set(2, 30);
+
+		assertEquals(2, original.get(1));
+		assertEquals(10, fork.get(1));
+		assertEquals(3, fork.get(2));
+		assertEquals(20, forkOfFork.get(1));
+		assertEquals(30, forkOfFork.get(2));
+	}
+
+	@Test
+	public void testGrowKeepsElementsAndDoesNotAffectForks() {
+		var original = IntChunkedArray.of(new int[]{1, 2});
+		var fork = original.fork();
+
+		fork.grow(2500);
+		fork.set(2, 3);
+		fork.set(2499, 4);
+
+		assertEquals(2500, fork.length());
+		assertEquals(1, fork.get(0));
+		assertEquals(3, fork.get(2));
+		assertEquals(0, fork.get(1500));
+		assertEquals(4, fork.get(2499));
+		assertEquals(2, original.length());
+	}
+}
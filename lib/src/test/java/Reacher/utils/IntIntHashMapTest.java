@@ -0,0 +1,60 @@
+package Reacher.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntIntHashMapTest {
+
+	@Test
+	public void testGetReturnsDefaultWhenKeyIsMissing() {
+		var map = new IntIntHashMap();
+
+		assertEquals(-1, map.get(5, -1));
+		assertFalse(map.containsKey(5));
+		assertFalse(map.containsKey(0));
+	}
+
+	@Test
+	public void testZeroAndNegativeKeysAreSupported() {
+		var map = new IntIntHashMap();
+
+		assertTrue(map.put(0, 10));
+		assertTrue(map.put(-3, 11));
+		assertFalse(map.put(0, 12));
+
+		assertEquals(12, map.get(0, -1));
+		assertEquals(11, map.get(-3, -1));
+		assertEquals(2, map.size());
+
+		assertTrue(map.remove(0));
+		assertFalse(map.containsKey(0));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testMatchesHashMapUnderRandomOperations() {
+		var random = new Random(13);
+		var map = new IntIntHashMap(4);
+		var expected = new HashMap<Integer, Integer>();
+
+		for (int i = 0; i < 100_000; i++) {
+			int key = random.nextInt(2_000) - 1_000;
+
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key) != null, map.remove(key));
+			} else {
+				int value = random.nextInt();
+				assertEquals(expected.put(key, value) == null, map.put(key, value));
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (int key = -1_000; key < 1_000; key++) {
+			assertEquals(expected.getOrDefault(key, -1), map.get(key, -1));
+		}
+	}
+}
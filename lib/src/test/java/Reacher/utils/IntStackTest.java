@@ -0,0 +1,40 @@
+package Reacher.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntStackTest {
+
+	@Test
+	public void testPushAndPopInLastInFirstOutOrder() {
+		var stack = new IntStack();
+		for (int i = 0; i < 100; i++) {
+			stack.push(i);
+		}
+
+		assertEquals(100, stack.size());
+		for (int i = 99; i >= 0; i--) {
+			assertEquals(i, stack.pop());
+		}
+		assertTrue(stack.isEmpty());
+		assertThrows(IllegalStateException.class, stack::pop);
+	}
+
+	@Test
+	public void testPushesToAForkAreNotVisibleInTheOriginal() {
+		var original = new IntStack();
+		original.push(1);
+		original.push(2);
+
+		var fork = original.fork();
+		fork.pop();
+		fork.push(3);
+		original.push(4);
+
+		assertEquals(3, fork.pop());
+		assertEquals(1, fork.pop());
+		assertEquals(4, original.pop());
+		assertEquals(2, original.pop());
+	}
+}
@@ -0,0 +1,63 @@
+package Reacher.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedIntIntMapTest {
+
+	@Test
+	public void testKeysAreSpreadOverSegmentsAndFound() {
+		var map = new SegmentedIntIntMap(10_000);
+
+		for (int key = 0; key < 10_000; key++) {
+			assertTrue(map.put(key * 7, key));
+		}
+
+		assertEquals(10_000, map.size());
+		for (int key = 0; key < 10_000; key++) {
+			assertEquals(key, map.get(key * 7, -1));
+		}
+		assertEquals(-1, map.get(1, -1));
+	}
+
+	@Test
+	public void testForksDoNotSeeEachOthersWrites() {
+		var original = new SegmentedIntIntMap(5_000);
+		for (int key = 0; key < 5_000; key++) {
+			original.put(key, key);
+		}
+
+		var fork = original.fork();
+		fork.remove(10);
+		fork.put(5_000, 5_000);
+		original.put(10, -10);
+
+		assertEquals(-10, original.get(10, -1));
+		assertFalse(original.containsKey(5_000));
+		assertEquals(5_000, original.size());
+
+		assertFalse(fork.containsKey(10));
+		assertEquals(5_000, fork.get(5_000, -1));
+		assertEquals(5_000, fork.size());
+	}
+
+	@Test
+	public void testMapGrownFromEmptyKeepsEveryKeyAcrossSplits() {
+		var original = new SegmentedIntIntMap(0);
+		original.put(-1, 1);
+
+		var fork = original.fork();
+		for (int key = 0; key < 20_000; key++) {
+			assertTrue(fork.put(key, -key));
+		}
+
+		assertEquals(20_001, fork.size());
+		for (int key = 0; key < 20_000; key++) {
+			assertEquals(-key, fork.get(key, 1));
+		}
+		assertEquals(1, fork.get(-1, 0));
+		assertEquals(1, original.size());
+		assertFalse(original.containsKey(0));
+	}
+}